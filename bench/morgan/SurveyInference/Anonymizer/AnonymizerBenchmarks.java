@@ -0,0 +1,256 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import morgan.SurveyInference.Benchmark.BenchmarkCase;
+import morgan.SurveyInference.Benchmark.BenchmarkData;
+
+/**
+ * Benchmarks of the Anonymizer's hot paths: the cleaning distance, cleanCandidateIDs over
+ * rosters of several sizes and with either index, and reading and writing data files.  Every
+ * case cleans on one thread, so its allocation is all on the benchmarking thread.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class AnonymizerBenchmarks {
+
+	/**
+	 * Name pairs compared per invocation of the distance benchmarks
+	 */
+	static final int DISTANCE_PAIRS = 100000;
+
+	/**
+	 * @param rosterSizes - the numbers of distinct names to clean
+	 * @param rows - the number of rows in the data files
+	 * @param seed - the seed every input is generated from
+	 * @return the cases
+	 */
+	public static List<BenchmarkCase> cases(int[] rosterSizes, int rows, long seed) {
+		List<BenchmarkCase> cases = new ArrayList<BenchmarkCase>();
+		cases.add(new DistanceCase(false, seed));
+		cases.add(new DistanceCase(true, seed));
+		for(int size : rosterSizes) {
+			cases.add(new CleanCase(size, "bktree", seed));
+			cases.add(new CleanCase(size, "symspell", seed));
+		}
+		cases.add(new ReadCase(rows, seed));
+		cases.add(new WriteCase(rows, seed));
+		return cases;
+	}
+
+	/**
+	 * @return the settings for the generated surveys, cleaning and writing on one thread
+	 */
+	static AnonymizerConfig configure() {
+		StringBuilder partners = new StringBuilder();
+		for(String column : BenchmarkData.PARTNER_COLUMNS) {
+			partners.append(partners.length() == 0 ? "" : ",").append(column);
+		}
+		return AnonymizerConfig.defaults().with("columnsToAnonymize", partners.toString())
+				.with("columnsIndicatingRespondent", "opername").with("cleaningThreads", "1")
+				.with("writingThreads", "1").with("streaming", "false");
+	}
+
+	/**
+	 * @param config - the settings to use
+	 * @return a new Anonymizer, holding no data, that logs to the console
+	 */
+	static Anonymizer newEngine(AnonymizerConfig config) {
+		return new Anonymizer(config, new ConsoleListener());
+	}
+
+	/**
+	 * CandidateIdentifier.LevenshteinDistance, the full DP or bounded at a threshold of 3
+	 */
+	static class DistanceCase extends BenchmarkCase {
+		boolean bounded;
+		long seed;
+		String[] left = new String[DISTANCE_PAIRS];
+		String[] right = new String[DISTANCE_PAIRS];
+
+		DistanceCase(boolean isBounded, long theSeed) {
+			super("LevenshteinDistance", (isBounded ? "bounded k=3" : "full") + " pairs=" + DISTANCE_PAIRS);
+			bounded = isBounded;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() {
+			Random random = new Random(seed);
+			for(int i = 0; i < DISTANCE_PAIRS; ++i) {
+				left[i] = BenchmarkData.randomName(random);
+				right[i] = BenchmarkData.randomName(random);
+			}
+		}
+
+		@Override
+		public long run() {
+			long total = 0;
+			for(int i = 0; i < DISTANCE_PAIRS; ++i) {
+				if(bounded) {
+					total += CandidateIdentifier.LevenshteinDistance(left[i], right[i], 3, true);
+				}
+				else {
+					total += CandidateIdentifier.LevenshteinDistance(left[i], right[i]);
+				}
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * CandidateIdentifier.cleanCandidateIDs over a roster of distinct names
+	 */
+	static class CleanCase extends BenchmarkCase {
+		int size;
+		String index;
+		long seed;
+		List<String> roster;
+		List<CandidateIdentifier> candidates;
+		Anonymizer engine;
+
+		CleanCase(int theSize, String theIndex, long theSeed) {
+			super("cleanCandidateIDs", "names=" + theSize + " index=" + theIndex);
+			size = theSize;
+			index = theIndex;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() {
+			engine = newEngine(configure().with("cleaningIndex", index));
+			roster = BenchmarkData.roster(size, seed);
+		}
+
+		@Override
+		public void beforeIteration() {
+			candidates = new ArrayList<CandidateIdentifier>(roster.size());
+			for(String name : roster) {
+				candidates.add(new CandidateIdentifier(name));
+			}
+		}
+
+		@Override
+		public long run() {
+			return CandidateIdentifier.cleanCandidateIDs(engine, candidates, new HashSet<String>()).size();
+		}
+	}
+
+	/**
+	 * Anonymizer.readDataFile
+	 */
+	static class ReadCase extends BenchmarkCase {
+		int rows;
+		long seed;
+		File survey;
+		Anonymizer engine;
+
+		ReadCase(int theRows, long theSeed) {
+			super("readDataFile", "rows=" + theRows);
+			rows = theRows;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			engine = newEngine(configure());
+			survey = BenchmarkData.temporary(File.createTempFile("survey", ".txt"));
+			BenchmarkData.writeSurvey(survey, rows, Math.max(100, rows / 10), seed);
+		}
+
+		@Override
+		public void beforeIteration() {
+			engine.reset();
+		}
+
+		@Override
+		public long run() throws Exception {
+			return engine.readDataFile(survey).size();
+		}
+
+		@Override
+		public void tearDown() {
+			survey.delete();
+		}
+	}
+
+	/**
+	 * Anonymizer.writeDataFile, of rows that have been elaborated, cleaned and anonymized
+	 */
+	static class WriteCase extends BenchmarkCase {
+		int rows;
+		long seed;
+		File output;
+		ArrayList<HashMap<String, String>> pData;
+		ArrayList<String> headers;
+		Anonymizer engine;
+
+		WriteCase(int theRows, long theSeed) {
+			super("writeDataFile", "rows=" + theRows);
+			rows = theRows;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			engine = newEngine(configure());
+			File survey = File.createTempFile("survey", ".txt");
+			BenchmarkData.writeSurvey(survey, rows, Math.max(100, rows / 10), seed);
+			pData = engine.readDataFile(survey);
+			survey.delete();
+			engine.elaborateParticipants(pData);
+			engine.cleanParticipants(pData);
+			engine.anonymizeParticipants(pData);
+			headers = new ArrayList<String>(engine.headers);
+			output = BenchmarkData.temporary(File.createTempFile("anonymized", ".txt"));
+		}
+
+		@Override
+		public void beforeIteration() {
+			// writeDataFile settles the header in place
+			engine.headers.clear();
+			engine.headers.addAll(headers);
+		}
+
+		@Override
+		public long run() throws Exception {
+			engine.writeDataFile(output, pData);
+			return output.length();
+		}
+
+		@Override
+		public void tearDown() {
+			output.delete();
+		}
+	}
+
+}
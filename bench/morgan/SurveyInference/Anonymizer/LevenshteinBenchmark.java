@@ -0,0 +1,168 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.Random;
+
+/**
+ * A microbenchmark comparing the full Levenshtein DP with the threshold-bounded kernel and the
+ * bit-parallel kernel on partner names of realistic length (roughly 5 to 30 characters).  As in
+ * cleanCandidateIDs, each bit-parallel pattern is built once and compared against many names.
+ * 
+ * Usage: LevenshteinBenchmark [pairs] [seed]
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class LevenshteinBenchmark {
+
+	/**
+	 * How many names each candidate is compared against
+	 */
+	static int BLOCK = 200;
+
+	static String[] FIRST = {"John", "Jon", "Mary", "Maria", "Robert", "Bob", "Patricia", "Jennifer",
+		"Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph",
+		"Jessica", "Thomas", "Sarah", "Christopher", "Karen", "Daniel", "Nancy", "Matthew", "Lisa"};
+
+	static String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+		"Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+		"Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White"};
+
+	static String[] ROLES = {"Extension Agent", "Crop Consultant", "Neighbor", "NRCS", "Beekeeper",
+		"Seed Dealer", "Chemical Rep", "Fruit Buyer", "Co-op Manager", "MSU Extension"};
+
+	/**
+	 * Generate a name the way they show up in the survey data: a first and last name, a role,
+	 * or an organisation, with an occasional typo.
+	 */
+	static String randomName(Random random) {
+		String name;
+		int kind = random.nextInt(3);
+		if(kind == 0) {
+			name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+		}
+		else if(kind == 1) {
+			name = ROLES[random.nextInt(ROLES.length)];
+		}
+		else {
+			name = LAST[random.nextInt(LAST.length)] + " " + LAST[random.nextInt(LAST.length)] + " Farms";
+		}
+		if(random.nextInt(4) == 0) {
+			StringBuilder typo = new StringBuilder(name);
+			int position = random.nextInt(typo.length());
+			typo.setCharAt(position, (char)('a' + random.nextInt(26)));
+			name = typo.toString();
+		}
+		return name;
+	}
+
+	public static void main(String[] args) {
+		int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+		Random random = new Random(seed);
+		String[] left = new String[pairs];
+		String[] right = new String[pairs];
+		// Each candidate is compared against a block of names, as it is against the approved names
+		for(int i = 0; i < pairs; ++i) {
+			left[i] = (i % BLOCK == 0) ? randomName(random) : left[i - 1];
+			right[i] = randomName(random);
+		}
+
+		System.out.println("Comparing " + pairs + " name pairs (seed " + seed + ")");
+		// Warm up both kernels so the JIT has compiled them before we measure
+		for(int round = 0; round < 3; ++round) {
+			runFull(left, right);
+			runBounded(left, right, 3);
+			runBitParallel(left, right, 3);
+		}
+
+		long fullNanos = Long.MAX_VALUE;
+		long boundedNanos = Long.MAX_VALUE;
+		long bitParallelNanos = Long.MAX_VALUE;
+		long checksumFull = 0, checksumBounded = 0, checksumBitParallel = 0;
+		for(int round = 0; round < 5; ++round) {
+			long start = System.nanoTime();
+			checksumFull = runFull(left, right);
+			fullNanos = Math.min(fullNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			checksumBounded = runBounded(left, right, 3);
+			boundedNanos = Math.min(boundedNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			checksumBitParallel = runBitParallel(left, right, 3);
+			bitParallelNanos = Math.min(bitParallelNanos, System.nanoTime() - start);
+		}
+
+		System.out.println("Full DP:         " + String.format("%8.1f", (double)fullNanos / pairs) + " ns/comparison (" + checksumFull + " within threshold)");
+		System.out.println("Bounded (k=3):   " + String.format("%8.1f", (double)boundedNanos / pairs) + " ns/comparison (" + checksumBounded + " within threshold)");
+		System.out.println("Bit-parallel:    " + String.format("%8.1f", (double)bitParallelNanos / pairs) + " ns/comparison (" + checksumBitParallel + " within threshold)");
+		System.out.println("Speedup bounded: " + String.format("%8.2f", (double)fullNanos / boundedNanos) + "x");
+		System.out.println("Speedup bit-par: " + String.format("%8.2f", (double)fullNanos / bitParallelNanos) + "x");
+		if(checksumFull != checksumBounded || checksumFull != checksumBitParallel) {
+			System.out.println("WARNING: kernels disagree!");
+		}
+	}
+
+	static long runFull(String[] left, String[] right) {
+		long within = 0;
+		for(int i = 0; i < left.length; ++i) {
+			if(CandidateIdentifier.LevenshteinDistance(left[i], right[i]) <= 3) {
+				++within;
+			}
+		}
+		return within;
+	}
+
+	/**
+	 * Each pattern is compared against a block of names, the way one candidate is compared
+	 * against the approved names.
+	 */
+	static long runBitParallel(String[] left, String[] right, int maxDistance) {
+		long within = 0;
+		for(int start = 0; start < left.length; start += BLOCK) {
+			NamePattern pattern = new NamePattern(left[start]);
+			int end = Math.min(left.length, start + BLOCK);
+			for(int i = start; i < end; ++i) {
+				if(pattern.distance(right[i], maxDistance, true) <= maxDistance) {
+					++within;
+				}
+			}
+		}
+		return within;
+	}
+
+	static long runBounded(String[] left, String[] right, int maxDistance) {
+		long within = 0;
+		for(int i = 0; i < left.length; ++i) {
+			if(CandidateIdentifier.LevenshteinDistance(left[i], right[i], maxDistance, true) <= maxDistance) {
+				++within;
+			}
+		}
+		return within;
+	}
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Generates synthetic surveys shaped like the ones the Anonymizer reads, for load testing
+ * without real respondents' data.
+ *
+ * Each row has a response number, a name in every respondent column, a name:role entry (or
+ * nothing) in every partner column, and a county and a crop.  Names come from a population of
+ * people, each with a role of their own; a share of them (collisionRate) have the same name
+ * as someone else, and a share of all names and roles written (typoRate) have one typo: a
+ * character substituted, inserted, deleted or swapped with the next.  Some people are
+ * mentioned far more often than others, as in real networks.  The columns and delimiters
+ * can be taken from an Anonymizer configuration file.
+ *
+ * The rows are generated in chunks of CHUNK_ROWS on a pool of threads and written out in
+ * order, as ParallelRowWriter does, so memory stays flat however many rows are asked for.
+ * Every chunk draws from a random generator seeded from the seed and the chunk's number
+ * alone, so the same seed and settings always give the same file, whatever the number of
+ * threads.
+ *
+ * Usage: SurveyGenerator [-config anonymizerConfig.txt] [-rows 100000] [-people n] [-seed 42]
+ *                        [-typoRate 0.1] [-collisionRate 0.02] [-fillRate 0.6] [-threads n] outputFile
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class SurveyGenerator {
+
+	/**
+	 * Rows generated together by one task
+	 */
+	static final int CHUNK_ROWS = 4096;
+
+	static final String[] FIRST = {"John", "Jon", "Mary", "Maria", "Robert", "Bob", "Patricia", "Jennifer",
+		"Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph",
+		"Jessica", "Thomas", "Sarah", "Christopher", "Karen", "Daniel", "Nancy", "Matthew", "Lisa",
+		"Anna", "Jane", "Mark", "Paul", "Steven", "Laura", "Kevin", "Amy", "Brian", "Emily"};
+
+	/**
+	 * Surnames are put together from these, for enough distinct names for millions of people
+	 */
+	static final String[] SYLLABLES = {"An", "Ber", "Car", "Dal", "Ed", "Fen", "Gar", "Hol", "Ing", "Jor",
+		"Kel", "Lan", "Mor", "Nel", "Ol", "Pet", "Quin", "Ros", "Sen", "Tor", "Ul", "Van", "Wil", "Yor",
+		"son", "ley", "ton", "berg", "man", "ford", "wood", "stein", "er", "ski", "ez", "dal"};
+
+	static final String[] ROLES = {"Extension Agent", "Crop Consultant", "Neighbor", "NRCS", "Beekeeper",
+		"Seed Dealer", "Chemical Rep", "Fruit Buyer", "Co-op Manager", "MSU Extension", "Grower", "Banker",
+		"Processor", "Family", "Farm Bureau"};
+
+	static final String[] COUNTIES = {"Allegan", "Berrien", "Kent", "Ottawa", "Van Buren", "Ingham", "Ionia",
+		"Muskegon", "Oceana", "Mason", "Manistee", "Leelanau", "Grand Traverse", "Antrim"};
+
+	static final String[] CROPS = {"Apples", "Blueberries", "Cherries", "Corn", "Soybeans", "Wheat", "Peaches",
+		"Grapes", "Asparagus", "Dry Beans", "Sugar Beets", "Potatoes"};
+
+	/**
+	 * How many rows to write
+	 */
+	public long rows = 100000;
+
+	/**
+	 * How many distinct people the names are drawn from; 0 for a twentieth of the rows
+	 */
+	public int people = 0;
+
+	public long seed = 42L;
+
+	/**
+	 * The share of names and roles written with a typo
+	 */
+	public double typoRate = 0.1;
+
+	/**
+	 * The share of people who have the same name as someone else
+	 */
+	public double collisionRate = 0.02;
+
+	/**
+	 * The share of partner cells that hold a partner
+	 */
+	public double fillRate = 0.6;
+
+	/**
+	 * How many threads to generate rows on; 0 for every core
+	 */
+	public int threads = 0;
+
+	public String[] respondentColumns = {"opername"};
+	public String[] partnerColumns = {"Quest14a", "Quest14b", "Quest14c", "Quest14d", "Quest14e", "Quest14f"};
+	public String dataDelimiter = "\t";
+	public String entryDelimiter = ":";
+
+	/**
+	 * The population, made once from the seed
+	 */
+	private String[] names;
+	private String[] roles;
+
+	/**
+	 * Take the columns and delimiters from an Anonymizer configuration file
+	 * 
+	 * @param configFile - the configuration file
+	 * @throws Exception - if it can't be read
+	 */
+	public void readConfiguration(File configFile) throws Exception {
+		AnonymizerConfig config = AnonymizerMain.readConfigurationFile(configFile, new ConsoleListener());
+		respondentColumns = config.columnsIndicatingRespondent.clone();
+		partnerColumns = config.columnsToAnonymize.clone();
+		dataDelimiter = config.dataDelimiter.replaceAll("\"", "");
+		entryDelimiter = config.entryDelimiter;
+	}
+
+	/**
+	 * Write a survey
+	 * 
+	 * @param file - the file to write
+	 * @return the number of bytes written
+	 * @throws IOException - if the file can't be written
+	 */
+	public long generate(File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			return generate(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a survey
+	 * 
+	 * @param out - where to write it; it is not closed
+	 * @return the number of bytes written
+	 * @throws IOException - if the survey can't be written
+	 */
+	public long generate(OutputStream out) throws IOException {
+		makePopulation();
+		final Charset charset = Charset.defaultCharset();
+		int threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			int count = 0;
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Survey generation " + ++count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		BlockingQueue<Future<byte[]>> queue = new ArrayBlockingQueue<Future<byte[]>>(threadCount * 2);
+		long chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+		long written = 0;
+		try {
+			byte[] header = header().getBytes(charset);
+			out.write(header);
+			written += header.length;
+
+			long submitted = 0;
+			for(long chunk = 0; chunk < chunks; ++chunk) {
+				// Keep the queue full, writing the oldest chunk whenever there is no room
+				while(submitted < chunks && queue.remainingCapacity() > 0) {
+					final long number = submitted++;
+					queue.add(pool.submit(new Callable<byte[]>() {
+						public byte[] call() {
+							return chunk(number).getBytes(charset);
+						}
+					}));
+				}
+				byte[] bytes = queue.take().get();
+				out.write(bytes);
+				written += bytes.length;
+			}
+			out.flush();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while generating the survey");
+		} catch (ExecutionException e) {
+			throw new IOException("Could not generate the survey", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return written;
+	}
+
+	private String header() {
+		StringBuilder line = new StringBuilder("respondent");
+		for(String column : respondentColumns) {
+			line.append(dataDelimiter).append(column.trim());
+		}
+		for(String column : partnerColumns) {
+			line.append(dataDelimiter).append(column.trim());
+		}
+		line.append(dataDelimiter).append("County");
+		line.append(dataDelimiter).append("Crop");
+		line.append(System.getProperty("line.separator"));
+		return line.toString();
+	}
+
+	/**
+	 * Make the people, and give a share of them someone else's name
+	 */
+	private void makePopulation() {
+		int count = people > 0 ? people : (int)Math.max(100, Math.min(Integer.MAX_VALUE, rows / 20));
+		Generator random = new Generator(mix(seed));
+		names = new String[count];
+		roles = new String[count];
+		for(int i = 0; i < count; ++i) {
+			if(i > 0 && random.nextDouble() < collisionRate) {
+				names[i] = names[random.nextInt(i)];
+			}
+			else if(random.nextInt(5) == 0) {
+				names[i] = surname(random) + " Farms";
+			}
+			else {
+				names[i] = FIRST[random.nextInt(FIRST.length)] + " " + surname(random);
+			}
+			roles[i] = ROLES[random.nextInt(ROLES.length)];
+		}
+	}
+
+	private static String surname(Generator random) {
+		StringBuilder surname = new StringBuilder(SYLLABLES[random.nextInt(24)]);
+		int more = 1 + random.nextInt(2);
+		for(int i = 0; i < more; ++i) {
+			surname.append(SYLLABLES[random.nextInt(SYLLABLES.length)].toLowerCase());
+		}
+		return surname.toString();
+	}
+
+	/**
+	 * Generate the rows of one chunk, from its own seed
+	 */
+	String chunk(long number) {
+		Generator random = new Generator(mix(seed ^ mix(number + 1)));
+		long first = number * CHUNK_ROWS;
+		long last = Math.min(rows, first + CHUNK_ROWS);
+		String lineSeparator = System.getProperty("line.separator");
+		StringBuilder text = new StringBuilder((int)(last - first) * 160);
+		for(long row = first; row < last; ++row) {
+			text.append(row);
+			for(int i = 0; i < respondentColumns.length; ++i) {
+				text.append(dataDelimiter);
+				appendWithTypo(text, names[pick(random)], random);
+			}
+			for(int i = 0; i < partnerColumns.length; ++i) {
+				text.append(dataDelimiter);
+				if(random.nextDouble() < fillRate) {
+					int person = pick(random);
+					appendWithTypo(text, names[person], random);
+					text.append(entryDelimiter);
+					appendWithTypo(text, roles[person], random);
+				}
+			}
+			text.append(dataDelimiter).append(COUNTIES[random.nextInt(COUNTIES.length)]);
+			text.append(dataDelimiter).append(CROPS[random.nextInt(CROPS.length)]);
+			text.append(lineSeparator);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return a person, the first ones far more often than the last
+	 */
+	private int pick(Generator random) {
+		double u = random.nextDouble();
+		return (int)(u * u * names.length);
+	}
+
+	private void appendWithTypo(StringBuilder text, String value, Generator random) {
+		if(value.length() < 2 || random.nextDouble() >= typoRate) {
+			text.append(value);
+			return;
+		}
+		int position = random.nextInt(value.length() - 1);
+		char letter = (char)('a' + random.nextInt(26));
+		switch(random.nextInt(4)) {
+		case 0:
+			text.append(value, 0, position).append(letter).append(value, position + 1, value.length());
+			break;
+		case 1:
+			text.append(value, 0, position).append(letter).append(value, position, value.length());
+			break;
+		case 2:
+			text.append(value, 0, position).append(value, position + 1, value.length());
+			break;
+		default:
+			text.append(value, 0, position).append(value.charAt(position + 1)).append(value.charAt(position))
+				.append(value, position + 2, value.length());
+		}
+	}
+
+	/**
+	 * The MurmurHash3 finaliser, to turn nearby seeds into unrelated ones
+	 */
+	static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	/**
+	 * SplitMix64: small and fast, with none of the atomic updates of java.util.Random, and
+	 * written out here so a seed gives the same numbers on every JVM
+	 */
+	static class Generator {
+		private long state;
+
+		Generator(long seed) {
+			state = seed;
+		}
+
+		long nextLong() {
+			long z = (state += 0x9E3779B97F4A7C15L);
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		int nextInt(int bound) {
+			return (int)(((nextLong() >>> 33) * bound) >>> 31);
+		}
+
+		double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		SurveyGenerator generator = new SurveyGenerator();
+		File output = null;
+		for(int i = 0; i < args.length; ++i) {
+			String option = args[i];
+			if(!option.startsWith("-")) {
+				output = new File(option);
+				continue;
+			}
+			if(i + 1 >= args.length) {
+				usage("Missing value for " + option);
+			}
+			String value = args[++i];
+			if(option.equals("-config")) {
+				generator.readConfiguration(new File(value));
+			}
+			else if(option.equals("-rows")) {
+				generator.rows = Long.parseLong(value);
+			}
+			else if(option.equals("-people")) {
+				generator.people = Integer.parseInt(value);
+			}
+			else if(option.equals("-seed")) {
+				generator.seed = Long.parseLong(value);
+			}
+			else if(option.equals("-typoRate")) {
+				generator.typoRate = Double.parseDouble(value);
+			}
+			else if(option.equals("-collisionRate")) {
+				generator.collisionRate = Double.parseDouble(value);
+			}
+			else if(option.equals("-fillRate")) {
+				generator.fillRate = Double.parseDouble(value);
+			}
+			else if(option.equals("-threads")) {
+				generator.threads = Integer.parseInt(value);
+			}
+			else {
+				usage("Unknown option " + option);
+			}
+		}
+		if(output == null) {
+			usage("No output file given");
+		}
+
+		long start = System.nanoTime();
+		long bytes = generator.generate(output);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Wrote %d rows (%.1f MB) to %s in %.1f s (%.1f MB/s)", generator.rows,
+				bytes / 1048576.0, output, seconds, bytes / 1048576.0 / seconds));
+	}
+
+	private static void usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: SurveyGenerator [-config anonymizerConfig.txt] [-rows 100000] [-people n] [-seed 42] "
+				+ "[-typoRate 0.1] [-collisionRate 0.02] [-fillRate 0.6] [-threads n] outputFile");
+		System.exit(1);
+	}
+
+}
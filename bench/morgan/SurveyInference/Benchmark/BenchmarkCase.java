@@ -0,0 +1,87 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Benchmark;
+
+/**
+ * One benchmark, with the parameters it runs at.  The Harness calls setUp once, then, for
+ * every warm-up and measured iteration, beforeIteration (not timed) and run (timed), and
+ * finally tearDown.
+ *
+ * run returns a value computed from its result, which the harness keeps, so the JIT can't
+ * discard the work as unused.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public abstract class BenchmarkCase {
+
+	private final String name;
+	private final String parameters;
+
+	/**
+	 * @param theName - what is measured, e.g. "cleanCandidateIDs"
+	 * @param theParameters - the inputs it is measured at, e.g. "names=10000 index=bktree"
+	 */
+	protected BenchmarkCase(String theName, String theParameters) {
+		name = theName;
+		parameters = theParameters;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Prepare the inputs, once
+	 * @throws Exception - if the inputs can't be prepared
+	 */
+	public void setUp() throws Exception {
+	}
+
+	/**
+	 * Reset any state the previous iteration left behind; not timed
+	 * @throws Exception - if the state can't be reset
+	 */
+	public void beforeIteration() throws Exception {
+	}
+
+	/**
+	 * Do the work being measured, once
+	 * @return a value derived from the result
+	 * @throws Exception - if the work fails, which ends the benchmark
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Release the inputs
+	 * @throws Exception - if they can't be released
+	 */
+	public void tearDown() throws Exception {
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import morgan.SurveyInference.Anonymizer.SurveyGenerator;
+
+/**
+ * Inputs for the benchmarks, generated from a seed so the same seed always gives the same
+ * data, on any machine and in any release.  Names are built the way they show up in the
+ * survey data: first and last names, organisations and roles, some with a typo, many
+ * repeated.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class BenchmarkData {
+
+	static final String[] FIRST = {"John", "Jon", "Mary", "Maria", "Robert", "Bob", "Patricia", "Jennifer",
+		"Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph",
+		"Jessica", "Thomas", "Sarah", "Christopher", "Karen", "Daniel", "Nancy", "Matthew", "Lisa"};
+
+	static final String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+		"Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+		"Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White"};
+
+	static final String[] ROLES = {"Extension Agent", "Crop Consultant", "Neighbor", "NRCS", "Beekeeper",
+		"Seed Dealer", "Chemical Rep", "Fruit Buyer", "Co-op Manager", "MSU Extension", "Grower"};
+
+	/**
+	 * The partner columns the generated surveys have, as the Anonymizer expects them
+	 */
+	public static final String[] PARTNER_COLUMNS = {"Quest14a", "Quest14b", "Quest14c", "Quest14d", "Quest14e", "Quest14f"};
+
+	/**
+	 * @param random - the source of the name
+	 * @return a person or organisation, with a typo one time in four
+	 */
+	public static String randomName(Random random) {
+		String name;
+		if(random.nextInt(3) > 0) {
+			name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)];
+		}
+		else {
+			name = LAST[random.nextInt(LAST.length)] + " " + LAST[random.nextInt(LAST.length)] + " Farms";
+		}
+		return addTypo(name, random, 4);
+	}
+
+	/**
+	 * @param random - the source of the role
+	 * @return a role, with a typo one time in six
+	 */
+	public static String randomRole(Random random) {
+		return addTypo(ROLES[random.nextInt(ROLES.length)], random, 6);
+	}
+
+	private static String addTypo(String value, Random random, int oneIn) {
+		if(random.nextInt(oneIn) != 0) {
+			return value;
+		}
+		StringBuilder typo = new StringBuilder(value);
+		typo.setCharAt(random.nextInt(typo.length()), (char)('a' + random.nextInt(26)));
+		return typo.toString();
+	}
+
+	/**
+	 * A roster of distinct raw names, as cleanCandidateIDs sees them
+	 * 
+	 * @param count - how many names
+	 * @param seed - the seed to generate from
+	 * @return the names
+	 */
+	public static List<String> roster(int count, long seed) {
+		Random random = new Random(seed);
+		ArrayList<String> names = new ArrayList<String>(count);
+		HashSet<String> seen = new HashSet<String>();
+		while(names.size() < count) {
+			String name = randomName(random);
+			// Past a few hundred names the combinations run out, so number the households
+			if(seen.contains(name)) {
+				name = name + " " + (1 + random.nextInt(count));
+			}
+			if(seen.add(name)) {
+				names.add(name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Write a tab-delimited survey with SurveyGenerator: a respondent, six partner columns of
+	 * name:role, a county and a crop
+	 * 
+	 * @param file - the file to write
+	 * @param rows - how many respondents
+	 * @param people - how many distinct people the names are drawn from
+	 * @param seed - the seed to generate from
+	 * @throws IOException - if the file can't be written
+	 */
+	public static void writeSurvey(File file, int rows, int people, long seed) throws IOException {
+		SurveyGenerator generator = new SurveyGenerator();
+		generator.rows = rows;
+		generator.people = people;
+		generator.seed = seed;
+		generator.threads = 1;
+		generator.partnerColumns = PARTNER_COLUMNS.clone();
+		generator.generate(file);
+	}
+
+	/**
+	 * @return an empty directory for a benchmark's files, removed when the JVM exits
+	 * @throws IOException - if it can't be made
+	 */
+	public static File temporaryDirectory() throws IOException {
+		File directory = File.createTempFile("surveyinference-bench", "");
+		if(!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Could not create " + directory);
+		}
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	/**
+	 * Remove a file when the JVM exits
+	 * 
+	 * @param file - the file
+	 * @return the file
+	 */
+	public static File temporary(File file) {
+		file.deleteOnExit();
+		return file;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import morgan.SurveyInference.Anonymizer.AnonymizerBenchmarks;
+import morgan.SurveyInference.Cleaner.CleanerBenchmarks;
+import morgan.SurveyInference.Linker.LinkerBenchmarks;
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Runs the benchmarks of the Anonymizer, Cleaner and Linker hot paths and prints a table of
+ * the results, optionally also writing them as CSV to compare across releases.  Every input
+ * is generated from the seed, so two runs with the same options measure the same work.
+ *
+ * Usage: BenchmarkSuite [-sizes 1000,5000,20000] [-rows 20000] [-seed 42] [-warmup 3]
+ *                       [-iterations 5] [-filter text] [-csv results.csv]
+ *
+ * -filter only runs the benchmarks whose name or parameters contain the text.  Run with
+ * -Djava.awt.headless=true on machines without a display.
+ *
+ * The same cases also run under JMH, which forks, warms up and reports error bars for them:
+ * build jmh/ with "mvn -f jmh/pom.xml package" and run "java -jar jmh/target/benchmarks.jar".
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class BenchmarkSuite {
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = {1000, 5000, 20000};
+		int rows = 20000;
+		long seed = 42L;
+		int warmup = 3;
+		int iterations = 5;
+		String filter = null;
+		File csv = null;
+
+		for(int i = 0; i < args.length; ++i) {
+			String option = args[i];
+			if(i + 1 >= args.length) {
+				usage("Missing value for " + option);
+			}
+			String value = args[++i];
+			if(option.equals("-sizes")) {
+				String[] parts = value.split(",");
+				sizes = new int[parts.length];
+				for(int p = 0; p < parts.length; ++p) {
+					sizes[p] = Integer.parseInt(parts[p].trim());
+				}
+			}
+			else if(option.equals("-rows")) {
+				rows = Integer.parseInt(value);
+			}
+			else if(option.equals("-seed")) {
+				seed = Long.parseLong(value);
+			}
+			else if(option.equals("-warmup")) {
+				warmup = Integer.parseInt(value);
+			}
+			else if(option.equals("-iterations")) {
+				iterations = Integer.parseInt(value);
+			}
+			else if(option.equals("-filter")) {
+				filter = value;
+			}
+			else if(option.equals("-csv")) {
+				csv = new File(value);
+			}
+			else {
+				usage("Unknown option " + option);
+			}
+		}
+
+		// The code under test logs its progress; keep only problems
+		SurveyLog.setLevel(SurveyLog.Level.WARN);
+
+		List<BenchmarkCase> cases = new ArrayList<BenchmarkCase>();
+		cases.addAll(AnonymizerBenchmarks.cases(sizes, rows, seed));
+		cases.addAll(CleanerBenchmarks.cases(rows, seed));
+		cases.addAll(LinkerBenchmarks.cases(rows, seed));
+
+		System.out.println("Java " + System.getProperty("java.version") + " (" + System.getProperty("java.vm.name")
+				+ "), " + Runtime.getRuntime().availableProcessors() + " cores, max heap "
+				+ (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+		System.out.println("Seed " + seed + ", " + warmup + " warm-up and " + iterations + " measured iterations");
+		System.out.println();
+		System.out.println(Harness.formatHeader());
+
+		Harness harness = new Harness(warmup, iterations);
+		for(BenchmarkCase benchmark : cases) {
+			if(filter != null && !benchmark.getName().contains(filter) && !benchmark.getParameters().contains(filter)) {
+				continue;
+			}
+			System.out.println(Harness.format(harness.measure(benchmark)));
+		}
+		SurveyLog.flush();
+
+		if(csv != null) {
+			harness.writeCSV(csv, seed);
+			System.out.println();
+			System.out.println("Results written to " + csv);
+		}
+		// Printed so the results can't be optimised away
+		System.out.println("(checksum " + harness.getSink() + ")");
+	}
+
+	private static void usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: BenchmarkSuite [-sizes 1000,5000,20000] [-rows 20000] [-seed 42] [-warmup 3] [-iterations 5] [-filter text] [-csv results.csv]");
+		System.exit(1);
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs BenchmarkCases and reports, for each, the time an invocation takes, what it allocates
+ * and how much garbage collection it caused.
+ *
+ * Each case is warmed up for a number of iterations, so the JIT has compiled the hot paths,
+ * and then measured for a number of iterations, each timed with System.nanoTime.  Allocation
+ * is read from the HotSpot extension of ThreadMXBean (getThreadAllocatedBytes) for the
+ * benchmarking thread, so work handed to other threads isn't counted; garbage collections
+ * and their time are summed over every collector's GarbageCollectorMXBean.  A collection
+ * is requested between cases so one case's garbage isn't collected in the next.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class Harness {
+
+	/**
+	 * The measurements of one case
+	 */
+	public static class Result {
+		public String name;
+		public String parameters;
+		public int iterations;
+		public double meanNanos;
+		public double deviationNanos;
+		public long minNanos;
+		/**
+		 * Bytes allocated per invocation, or -1 if the JVM can't tell
+		 */
+		public long allocatedBytes;
+		public long collections;
+		public long collectionMillis;
+	}
+
+	private int warmupIterations;
+	private int measuredIterations;
+	private List<Result> results = new ArrayList<Result>();
+
+	/**
+	 * Keeps every value run returned, so no result is unused
+	 */
+	private long sink = 0;
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * @param theWarmupIterations - iterations run before measuring
+	 * @param theMeasuredIterations - iterations measured
+	 */
+	public Harness(int theWarmupIterations, int theMeasuredIterations) {
+		warmupIterations = theWarmupIterations;
+		measuredIterations = theMeasuredIterations;
+	}
+
+	/**
+	 * Warm up and measure a case
+	 * 
+	 * @param benchmark - the case
+	 * @return its measurements
+	 * @throws Exception - if the case fails
+	 */
+	public Result measure(BenchmarkCase benchmark) throws Exception {
+		System.gc();
+		benchmark.setUp();
+		try {
+			for(int i = 0; i < warmupIterations; ++i) {
+				benchmark.beforeIteration();
+				sink += benchmark.run();
+			}
+
+			long[] nanos = new long[measuredIterations];
+			long allocated = 0;
+			boolean allocationKnown = true;
+			long collectionsBefore = getCollections();
+			long collectionMillisBefore = getCollectionMillis();
+			for(int i = 0; i < measuredIterations; ++i) {
+				benchmark.beforeIteration();
+				long allocatedBefore = getAllocatedBytes();
+				long start = System.nanoTime();
+				sink += benchmark.run();
+				nanos[i] = System.nanoTime() - start;
+				long allocatedAfter = getAllocatedBytes();
+				if(allocatedBefore < 0 || allocatedAfter < 0) {
+					allocationKnown = false;
+				}
+				allocated += allocatedAfter - allocatedBefore;
+			}
+
+			Result result = new Result();
+			result.name = benchmark.getName();
+			result.parameters = benchmark.getParameters();
+			result.iterations = measuredIterations;
+			result.collections = getCollections() - collectionsBefore;
+			result.collectionMillis = getCollectionMillis() - collectionMillisBefore;
+			result.allocatedBytes = allocationKnown ? allocated / measuredIterations : -1;
+			result.minNanos = Long.MAX_VALUE;
+			double total = 0;
+			for(long n : nanos) {
+				total += n;
+				result.minNanos = Math.min(result.minNanos, n);
+			}
+			result.meanNanos = total / measuredIterations;
+			double squares = 0;
+			for(long n : nanos) {
+				squares += (n - result.meanNanos) * (n - result.meanNanos);
+			}
+			result.deviationNanos = measuredIterations > 1 ? Math.sqrt(squares / (measuredIterations - 1)) : 0;
+			results.add(result);
+			return result;
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * @return every result measured so far
+	 */
+	public List<Result> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the sum of every value the cases returned
+	 */
+	public long getSink() {
+		return sink;
+	}
+
+	/**
+	 * @return a header for the lines of format
+	 */
+	public static String formatHeader() {
+		return String.format("%-28s %-32s %12s %10s %12s %14s %6s %8s", "Benchmark", "Parameters",
+				"Mean ms", "+/- ms", "Min ms", "Alloc MB/op", "GCs", "GC ms");
+	}
+
+	/**
+	 * @param result - a result
+	 * @return the result as one line of a table
+	 */
+	public static String format(Result result) {
+		return String.format("%-28s %-32s %12.3f %10.3f %12.3f %14s %6d %8d", result.name, result.parameters,
+				result.meanNanos / 1e6, result.deviationNanos / 1e6, result.minNanos / 1e6,
+				result.allocatedBytes < 0 ? "n/a" : String.format("%.3f", result.allocatedBytes / 1048576.0),
+				result.collections, result.collectionMillis);
+	}
+
+	/**
+	 * Write the results as comma-separated values, with the seed and JVM they were measured
+	 * with, so runs of different releases can be compared
+	 * 
+	 * @param file - the file to write
+	 * @param seed - the seed the inputs were generated from
+	 * @throws IOException - if the file can't be written
+	 */
+	public void writeCSV(File file, long seed) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			writer.println("benchmark,parameters,iterations,mean_ns,stdev_ns,min_ns,alloc_bytes_per_op,gc_count,gc_ms,seed,java_version");
+			for(Result result : results) {
+				writer.println(result.name + ",\"" + result.parameters + "\"," + result.iterations + ","
+						+ Math.round(result.meanNanos) + "," + Math.round(result.deviationNanos) + "," + result.minNanos + ","
+						+ result.allocatedBytes + "," + result.collections + "," + result.collectionMillis + ","
+						+ seed + "," + System.getProperty("java.version"));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private long getAllocatedBytes() {
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean)threads;
+			if(hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+				return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	private static long getCollections() {
+		long total = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, collector.getCollectionCount());
+		}
+		return total;
+	}
+
+	private static long getCollectionMillis() {
+		long total = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, collector.getCollectionTime());
+		}
+		return total;
+	}
+
+}
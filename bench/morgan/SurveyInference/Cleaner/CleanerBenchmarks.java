@@ -0,0 +1,123 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Cleaner;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import morgan.SurveyInference.Benchmark.BenchmarkCase;
+import morgan.SurveyInference.Benchmark.BenchmarkData;
+import morgan.SurveyInference.Logging.PerformanceReport;
+
+/**
+ * Benchmarks of the Cleaner: cleanRolesInFile over an Anonymizer output with cleaned roles in
+ * every actor column, and a re-code map from each misspelt role to the role.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class CleanerBenchmarks {
+
+	/**
+	 * @param rows - the number of rows in the file to clean
+	 * @param seed - the seed every input is generated from
+	 * @return the cases
+	 */
+	public static List<BenchmarkCase> cases(int rows, long seed) {
+		List<BenchmarkCase> cases = new ArrayList<BenchmarkCase>();
+		cases.add(new CleanRolesCase(rows, seed));
+		return cases;
+	}
+
+	/**
+	 * CleanerMain.cleanRolesInFile
+	 */
+	static class CleanRolesCase extends BenchmarkCase {
+		int rows;
+		long seed;
+		File input;
+		File output;
+		File report;
+
+		CleanRolesCase(int theRows, long theSeed) {
+			super("cleanRolesInFile", "rows=" + theRows);
+			rows = theRows;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			Random random = new Random(seed);
+			CleanerMain.cleaningMap.clear();
+			CleanerMain.categoryMap.clear();
+			for(int i = 0; i < 200; ++i) {
+				String role = BenchmarkData.randomRole(random);
+				String clean = role.substring(0, 1).toUpperCase() + role.substring(1);
+				CleanerMain.cleaningMap.put(role, clean);
+				CleanerMain.categoryMap.put(role, clean.length() % 2 == 0 ? "Advisor" : "Peer");
+			}
+
+			input = BenchmarkData.temporary(File.createTempFile("anonymized", ".txt"));
+			output = BenchmarkData.temporary(new File(input.getCanonicalPath() + "_CleanedRoles.txt"));
+			report = BenchmarkData.temporary(PerformanceReport.fileFor(output));
+			BufferedWriter writer = new BufferedWriter(new FileWriter(input));
+			try {
+				writer.write("respondent");
+				for(String actor : CleanerMain.actors) {
+					writer.write("\t" + actor + "_Name_Anonymous\t" + actor + "_Role_Cleaned");
+				}
+				writer.newLine();
+				for(int row = 0; row < rows; ++row) {
+					writer.write(Integer.toString(row));
+					for(int a = 0; a < CleanerMain.actors.length; ++a) {
+						writer.write("\tName" + random.nextInt(rows) + "\t" + BenchmarkData.randomRole(random));
+					}
+					writer.newLine();
+				}
+			} finally {
+				writer.close();
+			}
+		}
+
+		@Override
+		public long run() {
+			CleanerMain.cleanRolesInFile(input);
+			return output.length();
+		}
+
+		@Override
+		public void tearDown() {
+			input.delete();
+			output.delete();
+			report.delete();
+			CleanerMain.cleaningMap.clear();
+			CleanerMain.categoryMap.clear();
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Linker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import morgan.SurveyInference.Benchmark.BenchmarkCase;
+import morgan.SurveyInference.Benchmark.BenchmarkData;
+
+/**
+ * Benchmarks of the Linker: identifyUniqueNodes over anonymized survey rows, with one node
+ * definition for the respondent and one for each partner column, and writing the resulting
+ * network as DynetML.
+ *
+ * writeDynetML reports success in a dialog, so the DynetML case calls the four parts it is
+ * made of, in the same order, instead.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class LinkerBenchmarks {
+
+	/**
+	 * @param rows - the number of survey rows
+	 * @param seed - the seed every input is generated from
+	 * @return the cases
+	 */
+	public static List<BenchmarkCase> cases(int rows, long seed) {
+		List<BenchmarkCase> cases = new ArrayList<BenchmarkCase>();
+		cases.add(new IdentifyCase(rows, seed));
+		cases.add(new DynetMLCase(rows, seed));
+		return cases;
+	}
+
+	static ArrayList<NodeDefinition> definitions() {
+		NodeDefinition.uniqueTypes.clear();
+		ArrayList<NodeDefinition> definitions = new ArrayList<NodeDefinition>();
+		NodeDefinition respondent = new NodeDefinition("Respondent", "Respondent");
+		respondent.addIDCharacteristic("opername_Anonymous");
+		respondent.addDataCharacteristic("County");
+		definitions.add(respondent);
+		for(String column : BenchmarkData.PARTNER_COLUMNS) {
+			NodeDefinition partner = new NodeDefinition(column, "Partner");
+			partner.addIDCharacteristic(column + "_Name_Anonymous");
+			partner.addDataCharacteristic(column + "_Role_Cleaned");
+			definitions.add(partner);
+		}
+		return definitions;
+	}
+
+	/**
+	 * Rows as the Anonymizer leaves them, with names drawn from a population a tenth the size
+	 */
+	static ArrayList<HashMap<String, String>> participants(int rows, long seed) {
+		Random random = new Random(seed);
+		int people = Math.max(100, rows / 10);
+		ArrayList<HashMap<String, String>> pData = new ArrayList<HashMap<String, String>>(rows);
+		for(int row = 0; row < rows; ++row) {
+			HashMap<String, String> participant = new HashMap<String, String>();
+			participant.put("opername_Anonymous", "Name" + random.nextInt(people));
+			participant.put("County", BenchmarkData.randomRole(random));
+			for(String column : BenchmarkData.PARTNER_COLUMNS) {
+				if(random.nextInt(3) > 0) {
+					participant.put(column + "_Name_Anonymous", "Name" + random.nextInt(people));
+					participant.put(column + "_Role_Cleaned", BenchmarkData.randomRole(random));
+				}
+				else {
+					participant.put(column + "_Name_Anonymous", "");
+					participant.put(column + "_Role_Cleaned", "");
+				}
+			}
+			pData.add(participant);
+		}
+		return pData;
+	}
+
+	/**
+	 * LinkerMain.identifyUniqueNodes
+	 */
+	static class IdentifyCase extends BenchmarkCase {
+		int rows;
+		long seed;
+		ArrayList<NodeDefinition> definitions;
+		ArrayList<HashMap<String, String>> pData;
+
+		IdentifyCase(int theRows, long theSeed) {
+			super("identifyUniqueNodes", "rows=" + theRows);
+			rows = theRows;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() {
+			definitions = definitions();
+			pData = participants(rows, seed);
+		}
+
+		@Override
+		public long run() {
+			return LinkerMain.identifyUniqueNodes(definitions, pData).size();
+		}
+	}
+
+	/**
+	 * The parts of LinkerMain.writeDynetML, for the nodes identified in the survey rows
+	 */
+	static class DynetMLCase extends BenchmarkCase {
+		int rows;
+		long seed;
+		HashMap<String, IdentifiedNode> nodes;
+		ArrayList<NetworkDefinition> networks;
+		File output;
+
+		DynetMLCase(int theRows, long theSeed) {
+			super("writeDynetML", "rows=" + theRows);
+			rows = theRows;
+			seed = theSeed;
+		}
+
+		@Override
+		public void setUp() throws Exception {
+			nodes = LinkerMain.identifyUniqueNodes(definitions(), participants(rows, seed));
+			networks = new ArrayList<NetworkDefinition>();
+			networks.add(new NetworkDefinition("Advice", "Respondent", "Partner"));
+			output = BenchmarkData.temporary(File.createTempFile("network", ".xml"));
+		}
+
+		@Override
+		public long run() throws Exception {
+			HashMap<String, IdentifiedNode> rejiggeredNodes = new HashMap<String, IdentifiedNode>();
+			for(IdentifiedNode c : nodes.values()) {
+				rejiggeredNodes.put(c.id, c);
+			}
+			BufferedWriter writer = new BufferedWriter(new FileWriter(output));
+			try {
+				LinkerMain.writeDynetMLHeader(writer, "Benchmark");
+				LinkerMain.writeDynetMLNodes(writer, rejiggeredNodes);
+				LinkerMain.writeDynetMLEdges(writer, rejiggeredNodes, networks);
+				LinkerMain.writeDynetMLFooter(writer);
+			} finally {
+				writer.close();
+			}
+			return output.length();
+		}
+
+		@Override
+		public void tearDown() {
+			output.delete();
+		}
+	}
+
+}
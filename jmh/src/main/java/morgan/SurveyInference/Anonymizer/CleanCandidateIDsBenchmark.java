@@ -0,0 +1,87 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * CandidateIdentifier.cleanCandidateIDs over a seeded roster of distinct names, with either
+ * index.  Cleaning merges the candidates it is given, so every invocation starts from a fresh
+ * list, built outside the measurement.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CleanCandidateIDsBenchmark {
+
+	@Param({"1000", "5000", "20000"})
+	public int names;
+
+	@Param({"bktree", "symspell"})
+	public String index;
+
+	@Param({"42"})
+	public long seed;
+
+	AnonymizerBenchmarks.CleanCase clean;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SurveyLog.setLevel(SurveyLog.Level.WARN);
+		clean = new AnonymizerBenchmarks.CleanCase(names, index, seed);
+		clean.setUp();
+	}
+
+	@Setup(Level.Invocation)
+	public void freshCandidates() {
+		clean.beforeIteration();
+	}
+
+	@Benchmark
+	public long cleanCandidateIDs() {
+		return clean.run();
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import morgan.SurveyInference.Benchmark.BenchmarkData;
+
+/**
+ * CandidateIdentifier.LevenshteinDistance, the full DP and bounded at a threshold of 3, over
+ * AnonymizerBenchmarks.DISTANCE_PAIRS seeded pairs of names.  Scores are per comparison.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LevenshteinDistanceBenchmark {
+
+	@Param({"42"})
+	public long seed;
+
+	String[] left = new String[AnonymizerBenchmarks.DISTANCE_PAIRS];
+	String[] right = new String[AnonymizerBenchmarks.DISTANCE_PAIRS];
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(seed);
+		for(int i = 0; i < left.length; ++i) {
+			left[i] = BenchmarkData.randomName(random);
+			right[i] = BenchmarkData.randomName(random);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AnonymizerBenchmarks.DISTANCE_PAIRS)
+	public void full(Blackhole sink) {
+		for(int i = 0; i < left.length; ++i) {
+			sink.consume(CandidateIdentifier.LevenshteinDistance(left[i], right[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AnonymizerBenchmarks.DISTANCE_PAIRS)
+	public void bounded(Blackhole sink) {
+		for(int i = 0; i < left.length; ++i) {
+			sink.consume(CandidateIdentifier.LevenshteinDistance(left[i], right[i], 3, true));
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Linker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * LinkerMain.identifyUniqueNodes over seeded anonymized survey rows, and writing the network
+ * the nodes make as DynetML.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LinkerBenchmark {
+
+	@Param({"20000"})
+	public int rows;
+
+	@Param({"42"})
+	public long seed;
+
+	LinkerBenchmarks.IdentifyCase identify;
+	LinkerBenchmarks.DynetMLCase dynetML;
+
+	@Setup
+	public void setUp() throws Exception {
+		SurveyLog.setLevel(SurveyLog.Level.WARN);
+		identify = new LinkerBenchmarks.IdentifyCase(rows, seed);
+		identify.setUp();
+		dynetML = new LinkerBenchmarks.DynetMLCase(rows, seed);
+		dynetML.setUp();
+	}
+
+	@TearDown
+	public void tearDown() {
+		dynetML.tearDown();
+	}
+
+	@Benchmark
+	public long identifyUniqueNodes() {
+		return identify.run();
+	}
+
+	@Benchmark
+	public long writeDynetML() throws Exception {
+		return dynetML.run();
+	}
+
+}
@@ -0,0 +1,1255 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import morgan.SurveyInference.Logging.PerformanceReport;
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * The Anonymizer itself: reads a data file, elaborates, cleans and anonymizes its names and
+ * roles, and writes the result, following an AnonymizerConfig.  AnonymizerMain, the window and
+ * AnonymizerCLI are its clients.
+ * 
+ * Everything a run works on belongs to its Anonymizer, so any number of them, with the same
+ * or different configurations, can run at once in one JVM; one Anonymizer runs one file at a
+ * time.  What it found is kept after the run, for review, until the next run starts.  Only
+ * the SurveyLog level and counters are shared: the counters total every run in the JVM, and
+ * it is up to the tool to reset them.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class Anonymizer {
+
+	/**
+	 * This is what the index card holding the person's raw name will use
+	 */
+	static final String PARTNER_NAME_SUFFIX = "_Name";
+
+	/**
+	 * This is what the index card holding the person's raw role will use
+	 */
+	static final String PARTNER_ROLE_SUFFIX = "_Role";
+
+	/**
+	 * If a partner's name wasn't provided, then we go with "Unknown"
+	 */
+	static final String UNKNOWN_ACTOR = "Unknown";
+
+	/**
+	 * When we clean names and roles, we add this to the end of the index question
+	 */
+	static final String CLEAN_EXTENSION = "_Cleaned";
+
+	/**
+	 * When we anonymize names, we add this to the end of the index question
+	 */
+	static final String ANON_EXTENSION = "_Anonymous";
+
+	/**
+	 * Running totals for the run log.  Individual rows and cells are only logged at the DEBUG
+	 * and TRACE levels of SurveyLog.
+	 */
+	static SurveyLog.Counter rowsProcessed = SurveyLog.counter("Rows processed");
+	static SurveyLog.Counter cellsCleaned = SurveyLog.counter("Cells cleaned");
+	static SurveyLog.Counter cellsChanged = SurveyLog.counter("Cells changed by cleaning");
+	static SurveyLog.Counter bytesWritten = SurveyLog.counter("Bytes written");
+	static SurveyLog.Counter pseudonymsReused = SurveyLog.counter("Pseudonyms reused from the registry");
+	static SurveyLog.Counter pseudonymsCreated = SurveyLog.counter("Pseudonyms added to the registry");
+
+	/**
+	 * The settings of every run
+	 */
+	private final AnonymizerConfig config;
+
+	/**
+	 * Gives reports to the user on what is going on: progress, warnings and a control log.
+	 */
+	final AnonymizerListener listener;
+
+	/**
+	 * All headers found in the data
+	 */
+	ArrayList<String> headers;
+
+	/**
+	 * All names so far found, used in Minimum Edit Distance
+	 */
+	HashSet<String> uniqueNames;
+
+	/**
+	 * All names and roles ever found
+	 */
+	ArrayList<CandidateIdentifier> candidateNames;
+	ArrayList<CandidateIdentifier> candidateRoles;
+	HashMap<String, CandidateIdentifier> candidateNameMap;
+	HashMap<String, CandidateIdentifier> candidateRoleMap;
+
+	/**
+	 * All roles so far found, used in Minimum Edit Distance
+	 */
+	HashSet<String> uniqueRoles;
+
+	/**
+	 * The checkpoint of the current run, or null
+	 */
+	Checkpoint runCheckpoint = null;
+
+	/**
+	 * The cleaning histories of the last run, kept so reviewed decisions can be added to them
+	 * (see acceptReview); null if no history is kept
+	 */
+	CleaningHistory lastNameHistory = null;
+	CleaningHistory lastRoleHistory = null;
+
+	/**
+	 * True if a review has changed the history since it was saved (see saveReviews)
+	 */
+	private boolean namesReviewed = false;
+	private boolean rolesReviewed = false;
+
+	/**
+	 * The name dictionary shared with other Anonymizers, or null to give out pseudonyms alone
+	 */
+	private PseudonymDictionary sharedNames = null;
+
+	/**
+	 * The cleaning decisions shared with other Anonymizers, and this one's turn to commit, or
+	 * null to clean alone
+	 */
+	private SharedCleaning sharedCleaning = null;
+	private int cleaningTurn = 0;
+
+	/**
+	 * The pseudonyms given out during the last run's turn to commit, or null
+	 */
+	private HashMap<String, String> sharedAnonymousNames = null;
+
+	/**
+	 * Set when cleaning fails on one thread, so the cleaning on the other stops too
+	 */
+	private volatile boolean abandoned = false;
+
+	/**
+	 * How long the last run waited for its turn to commit its cleaning
+	 */
+	private long cleaningWaitNanos = 0;
+
+	/**
+	 * Where the phases of the current run are measured
+	 */
+	private PerformanceReport performanceReport = PerformanceReport.create("Anonymizer");
+
+	/**
+	 * @param theConfig - the settings of every run
+	 * @param theListener - told of progress, and asked whether to stop
+	 */
+	public Anonymizer(AnonymizerConfig theConfig, AnonymizerListener theListener) {
+		config = theConfig;
+		listener = theListener;
+		reset();
+	}
+
+	/**
+	 * @return the settings of every run
+	 */
+	public AnonymizerConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * Give out pseudonyms from a dictionary shared with other Anonymizers, so a name gets the
+	 * same pseudonym from all of them.  A pseudonymKey still takes its place.
+	 * 
+	 * @param dictionary - the shared dictionary, or null to give out pseudonyms alone
+	 */
+	public void shareNames(PseudonymDictionary dictionary) {
+		sharedNames = dictionary;
+	}
+
+	/**
+	 * Clean with decisions shared with other Anonymizers instead of a cleaning history of this
+	 * one's own, committing them in this one's turn.  The pseudonyms of a shared dictionary are
+	 * then given out during the turn too, so they are numbered in turn order.
+	 * 
+	 * @param shared - the shared decisions, or null to clean alone
+	 * @param turn - this Anonymizer's place in the turns
+	 */
+	public void shareCleaning(SharedCleaning shared, int turn) {
+		sharedCleaning = shared;
+		cleaningTurn = turn;
+	}
+
+	/**
+	 * @return how long, in nanoseconds, the last run waited for its turn to commit its cleaning
+	 */
+	long getCleaningWaitNanos() {
+		return cleaningWaitNanos;
+	}
+
+	/**
+	 * Forget what the last run found
+	 */
+	void reset() {
+		headers = new ArrayList<String>();
+		uniqueNames = new HashSet<String>();
+		uniqueRoles = new HashSet<String>();
+		candidateNames = new ArrayList<CandidateIdentifier>();
+		candidateRoles = new ArrayList<CandidateIdentifier>();
+		candidateNameMap = new HashMap<String, CandidateIdentifier>();
+		candidateRoleMap = new HashMap<String, CandidateIdentifier>();
+		lastNameHistory = null;
+		lastRoleHistory = null;
+		namesReviewed = false;
+		rolesReviewed = false;
+		runCheckpoint = null;
+		sharedAnonymousNames = null;
+		cleaningWaitNanos = 0;
+		abandoned = false;
+	}
+
+	/**
+	 * This is the main execution thread of the program.  It does the following:
+	 *  1) Read in the DataFile
+	 *  2) Elaborate (separate participant name and roles) each participant
+	 *  3) Clean (check unique sets via minimum edit distance) each participant
+	 *  4) Anonymize each participant
+	 *  5) Write out the data
+	 * 
+	 * @param dataFile - the tab-delimited data file to process
+	 * @param fileToWrite - where the anonymized (or cleaned) data goes
+	 * @throws Exception - if the data can't be read or written
+	 */
+	public synchronized void run(File dataFile, File fileToWrite) throws Exception {
+		run(dataFile, fileToWrite, false);
+	}
+
+	/**
+	 * As run, but carrying on from the checkpoint the configuration names, if a run of the same
+	 * file with the same settings was stopped part way through
+	 * 
+	 * @param dataFile - the tab-delimited data file to process
+	 * @param fileToWrite - where the anonymized (or cleaned) data goes
+	 * @throws Exception - if the data can't be read or written, or the checkpoint doesn't match
+	 * @throws IllegalStateException - if the configuration names no checkpoint
+	 */
+	public synchronized void resume(File dataFile, File fileToWrite) throws Exception {
+		if(!config.hasCheckpoint()) {
+			throw new IllegalStateException("Resuming needs a checkpoint file set in the configuration");
+		}
+		run(dataFile, fileToWrite, true);
+	}
+
+	private void run(File dataFile, File fileToWrite, boolean resume) throws Exception {
+		reset();
+		performanceReport = PerformanceReport.create("Anonymizer").detail("input", dataFile.getAbsolutePath())
+				.detail("inputBytes", dataFile.length()).detail("streaming", config.streaming)
+				.detail("cleaningIndex", config.cleaningBlocking.equals("") ? config.cleaningIndex : "blocking:" + config.cleaningBlocking)
+				.detail("cleaningMode", config.cleaningMode).detail("cleaningThreads", config.getCleaningThreads()).detail("writingThreads", config.getWritingThreads());
+		if(config.hasCheckpoint()) {
+			if(resume) {
+				runCheckpoint = Checkpoint.resume(new File(config.checkpoint), dataFile, config, listener);
+			}
+			else {
+				runCheckpoint = Checkpoint.start(new File(config.checkpoint), dataFile, config);
+			}
+		}
+		boolean completed = false;
+		try {
+			if(config.streaming) {
+				streamDataFile(dataFile, fileToWrite);
+			}
+			else {
+				runInMemory(dataFile, fileToWrite);
+			}
+			completed = true;
+			performanceReport.writeFor(fileToWrite);
+		} catch (CancellationException e) {
+			// Don't leave a partly written file behind
+			fileToWrite.delete();
+			throw e;
+		} finally {
+			if(runCheckpoint != null) {
+				runCheckpoint.close(completed);
+				runCheckpoint = null;
+			}
+			SurveyLog.flush();
+		}
+	}
+
+	/**
+	 * Start measuring a phase of the current run
+	 * 
+	 * @param name - the phase, usually the method doing it
+	 * @return the phase, to end when it is done
+	 */
+	PerformanceReport.Phase beginPhase(String name) {
+		return performanceReport.beginPhase(name);
+	}
+
+	/**
+	 * @return the name candidates the last run found, each with its cleanedID
+	 */
+	Collection<CandidateIdentifier> getCandidateNames() {
+		return candidateNameMap.values();
+	}
+
+	/**
+	 * @return the role candidates the last run found, each with its cleanedID
+	 */
+	Collection<CandidateIdentifier> getCandidateRoles() {
+		return candidateRoleMap.values();
+	}
+
+	private void runInMemory(File dataFile, File fileToWrite) throws Exception {
+		// 1. Read file, convert to HashMap "index card" representation
+		ArrayList<HashMap<String, String>> pData = readDataFile(dataFile);
+		// 2. Convert Quest14a, Quest14b, Quest14c, Quest14d, Quest14e to name and role
+		//    2a. If the cell isn't empty, then
+		//    2b. Delimiter between name and role is ":"
+		//    2c. If no delimiter, then the name is unknown and the value given is role
+		listener.setProgressMaximum(pData.size());
+		elaborateParticipants(pData);
+		checkpointElaborated();
+		// 3. Create "cleaned names" based on variable Levenshtein distance for:
+		//    Quest14a_Name, Quest14b_Name, Quest14c_Name, Quest14d_Name, Quest14e_Name,
+		//    opername
+		// 4. Create "cleaned roles" based on variable Levenshtein distance for:
+		//    Quest14a_Role, Quest14b_Role, Quest14c_Role, Quest14d_Role, Quest14e_Role,
+		cleanParticipants(pData);
+
+		if(config.anonymize) {
+			// 5. Create "anonymous names"
+			anonymizeParticipants(pData);
+			if(runCheckpoint != null) {
+				runCheckpoint.recordPhase(Checkpoint.ANONYMIZED);
+			}
+		}
+		// 6. Output new file
+		writeDataFile(fileToWrite, pData);
+	}
+
+	/**
+	 * @param dataFile - the data file to be processed
+	 * @return the default output file, next to the data file
+	 * @throws IOException - if the data file's folder can't be resolved
+	 */
+	public File getOutputFile(File dataFile) throws IOException {
+		String fileString = "//Anonymized_" + dataFile.getName();
+		if(!config.anonymize) {
+			fileString = "//Cleaned_" + dataFile.getName();
+		}
+		return new File(dataFile.getAbsoluteFile().getParentFile().getCanonicalPath() + fileString);
+	}
+
+	/**
+	 * Stop the run if the listener has asked for it.  The long loops call this once per row or
+	 * candidate, so a cancelled run stops promptly, closing its files on the way out.
+	 * 
+	 * @throws CancellationException - if the run has been cancelled
+	 */
+	void checkCancelled() {
+		if(listener.isCancelled()) {
+			throw new CancellationException("Run cancelled");
+		}
+		if(abandoned) {
+			throw new CancellationException("Run stopped, as cleaning failed on another thread");
+		}
+	}
+
+	/**
+	 * Reads in a given data file and generates a collection of hashmaps, each hashmap represents
+	 * a participant.
+	 * 
+	 * Note that we trim data as we get it, which removes white-spaces from in front and behind each
+	 * element of the data.
+	 * 
+	 * @param dataFile The tab-delimited data-file to read
+	 * @return a set of participant data 
+	 * @throws Exception If someone goes wrong in reading the data file, we cancel execution
+	 */
+	ArrayList<HashMap<String, String>> readDataFile(File dataFile) throws Exception {
+		PerformanceReport.Phase phase = performanceReport.beginPhase("readDataFile");
+		ArrayList<HashMap<String, String>> participantData = new ArrayList<HashMap<String, String>>();
+
+		BufferedReader reader = new BufferedReader(new FileReader(dataFile));
+		try {
+			String[] headerElements = readHeader(reader);
+			Collections.addAll(headers, headerElements);
+
+			listener.log("Configuring...");
+			for(String partner : config.columnsToAnonymize) {	
+				if(!headers.contains(partner)) {
+					listener.log("\tAnonymization Column, " + partner + ", not found!");
+				}
+			}
+			for(String operator : config.columnsIndicatingRespondent) {	
+				if(!headers.contains(operator)) {
+					listener.log("\tAnonymization Column, " + operator + ", not found!");
+				}
+			}
+
+			while(reader.ready()) {
+				checkCancelled();
+				participantData.add(readParticipant(reader.readLine(), headerElements));
+			}
+		} finally {
+			reader.close();
+		}
+
+		phase.end(participantData.size());
+		return participantData;
+	}
+
+	/**
+	 * Read the header line of a data file
+	 * 
+	 * @param reader - positioned at the start of the data file
+	 * @return the trimmed header elements
+	 * @throws IOException - if the header can't be read
+	 */
+	String[] readHeader(BufferedReader reader) throws IOException {
+		String headerLine = reader.readLine();
+		String delimiterToUse = config.dataDelimiter.replaceAll("\"", "");
+		String[] headerElements = headerLine.split(delimiterToUse);
+		for(int i = 0; i < headerElements.length; ++i) {
+			headerElements[i] = headerElements[i].trim();
+			//System.out.println(headerElements[i]);
+		}
+		return headerElements;
+	}
+
+	/**
+	 * Convert a single line of the data file into a participant
+	 * 
+	 * @param dataLine - the line to convert
+	 * @param headerElements - the header of the data file
+	 * @return the participant, keyed by header element
+	 */
+	HashMap<String, String> readParticipant(String dataLine, String[] headerElements) {
+		HashMap<String, String> participant = new HashMap<String, String>();
+		String[] dataElements = dataLine.split(config.dataDelimiter.replaceAll("\"", ""));
+		for(int i = 0; i < dataElements.length; ++i) {
+			if(headerElements.length > i) {
+				if(!headerElements[i].equals("")) {
+					String d = dataElements[i].trim();
+					d = d.replaceAll("\"", "");
+					//System.out.println(headerElements[i] + " : " + d);
+					participant.put(headerElements[i], d);
+				}
+			}
+		}
+		return participant;
+	}
+
+	/**
+	 * Anonymize (or clean) a data file without holding all of its participants in memory.
+	 * The first pass reads each row only to collect its candidate names and roles.  Once they
+	 * are cleaned and given anonymous names, the second pass reads the file again and writes
+	 * each row out as soon as it has been processed.
+	 * 
+	 * @param dataFile - the tab-delimited data-file to read
+	 * @param fileToWrite - the output file
+	 * @throws Exception - if the data file can't be read or the output written
+	 */
+	void streamDataFile(File dataFile, File fileToWrite) throws Exception {
+		// 1 & 2. Read and elaborate each participant, keeping only the candidates
+		listener.setStage("Elaborating...");
+		listener.log("Elaborating...");
+		PerformanceReport.Phase phase = performanceReport.beginPhase("elaborateParticipants");
+		BufferedReader reader = new BufferedReader(new FileReader(dataFile));
+		String[] headerElements;
+		int row = 1;
+		try {
+			headerElements = readHeader(reader);
+			Collections.addAll(headers, headerElements);
+			while(reader.ready()) {
+				checkCancelled();
+				elaborateParticipant(++row, readParticipant(reader.readLine(), headerElements));
+			}
+		} finally {
+			reader.close();
+		}
+		listener.setProgressMaximum(row - 1);
+		phase.end(row - 1);
+		checkpointElaborated();
+
+		// 3 & 4. Clean the candidates
+		cleanCandidates();
+
+		// 5. Create "anonymous names"
+		HashMap<String, String> anonymousNames = null;
+		if(config.anonymize) {
+			listener.setStage("Anonymizing...");
+			listener.log("Anonymizing...");
+			phase = performanceReport.beginPhase("createAnonymousNames");
+			anonymousNames = createAnonymousNames();
+			phase.end(anonymousNames.size());
+			if(runCheckpoint != null) {
+				runCheckpoint.recordPhase(Checkpoint.ANONYMIZED);
+			}
+		}
+
+		// 6. Read the file again, writing each participant as we go
+		int counter = 0;
+		listener.setStage("Writing...");
+		listener.log("Writing...");
+		phase = performanceReport.beginPhase("writeDataFile");
+		RowWriter writer = writeHeader(fileToWrite);
+		try {
+			reader = new BufferedReader(new FileReader(dataFile));
+		} catch (IOException e) {
+			writer.close();
+			throw e;
+		}
+		try {
+			readHeader(reader);
+			while(reader.ready()) {
+				checkCancelled();
+				listener.setProgress(++counter);
+				HashMap<String, String> participant = readParticipant(reader.readLine(), headerElements);
+				elaborateParticipant(counter + 1, participant, false);
+				cleanParticipant(participant);
+				if(anonymousNames != null) {
+					anonymizeParticipant(anonymousNames, participant);
+				}
+				writer.writeRow(participant);
+			}
+		} finally {
+			reader.close();
+			writer.close();
+		}
+		logWriteThroughput(writer);
+		phase.set("bytesWritten", writer.getBytesWritten()).end(counter);
+	}
+
+	/**
+	 * Go through and elaborate each participant
+	 * 
+	 * @param pData
+	 */
+	void elaborateParticipants(ArrayList<HashMap<String, String>> pData) {
+		PerformanceReport.Phase phase = performanceReport.beginPhase("elaborateParticipants");
+		int counter = 1;
+		listener.setStage("Elaborating...");
+		listener.log("Elaborating...");
+		for(HashMap<String, String> participant : pData) {
+			checkCancelled();
+			listener.setProgress(++counter);
+			elaborateParticipant(counter, participant);
+		}
+		phase.end(pData.size());
+	}
+
+	/**
+	 * For each participant, we do two things:
+	 * 
+	 * 1) We add an implicit role for each participant
+	 * 2) For each valid Interaction Partner, we split them in half based on the given
+	 *     delimiter, if there is no delimiter, but it's not empty, then we assume it
+	 *     is a role, and that the name is "Unknown".
+	 * 
+	 * We also capitalize all three letter names or roles (and only three-letter names and roles).
+	 *     
+	 * @param participant A collection of data representing a participant
+	 */
+	void elaborateParticipant(int row, HashMap<String, String> participant) {
+		elaborateParticipant(row, participant, true);
+	}
+
+	/**
+	 * As elaborateParticipant, but parsing errors are only logged if report is true, so a
+	 * second pass over the same rows doesn't report them twice.
+	 */
+	void elaborateParticipant(int row, HashMap<String, String> participant, boolean report) {
+		if(report) {
+			rowsProcessed.increment();
+		}
+		for(String iPartner : config.columnsToAnonymize) {
+			if(participant.containsKey(iPartner)) {
+				String partnerData = participant.get(iPartner).trim();
+				//System.out.println("Data Check (" + iPartner + ") :" + partnerData);
+				if(!partnerData.equals("")) {
+					try{
+						// We have data
+						if(config.columnHasRole) {
+							if(SurveyLog.isEnabled(SurveyLog.Level.TRACE)) {
+								SurveyLog.trace("hasRole:" + partnerData);
+							}
+							if(partnerData.contains(config.entryDelimiter)) {
+								// We have a name and a role
+								String[] partner = partnerData.split(config.entryDelimiter);
+								String pName = partner[0].trim();
+								String pRole = partner[1].trim();
+								if(pName.length() <= 3) {
+									pName = pName.toUpperCase();
+								}
+								if(pRole.length() <= 3) {
+									pRole = pRole.toUpperCase();
+								}
+								participant.put(iPartner + PARTNER_NAME_SUFFIX, pName);
+								participant.put(iPartner + PARTNER_ROLE_SUFFIX, pRole);
+								
+								CandidateIdentifier cIDName = new CandidateIdentifier(pName);
+								CandidateIdentifier cIDRole = new CandidateIdentifier(pRole);
+								
+								if(!candidateNameMap.containsKey(pName)) {
+									candidateNameMap.put(pName, cIDName);
+									candidateNames.add(cIDName);
+								}
+								
+								if(!candidateRoleMap.containsKey(pRole)) {
+									candidateRoleMap.put(pRole, cIDRole);
+									candidateRoles.add(cIDRole);
+								}
+								
+							}
+							else {
+								if(partnerData.length() <= 3) {
+									partnerData = partnerData.toUpperCase();
+								}
+								participant.put(iPartner + PARTNER_NAME_SUFFIX, UNKNOWN_ACTOR);
+								participant.put(iPartner + PARTNER_ROLE_SUFFIX, partnerData);
+								
+								
+								CandidateIdentifier cIDRole = new CandidateIdentifier(partnerData);
+								
+								if(!candidateRoleMap.containsKey(partnerData)) {
+									candidateRoleMap.put(partnerData, cIDRole);
+									candidateRoles.add(cIDRole);
+								}
+							}
+						}
+						else {
+							if(SurveyLog.isEnabled(SurveyLog.Level.TRACE)) {
+								SurveyLog.trace("noRole:" + partnerData);
+							}
+							if(partnerData.length() <= 3) {
+								partnerData = partnerData.toUpperCase();
+							}
+							participant.put(iPartner + PARTNER_NAME_SUFFIX, partnerData);
+							
+							CandidateIdentifier cIDName = new CandidateIdentifier(partnerData);
+							
+							if(!candidateNameMap.containsKey(partnerData)) {
+								candidateNameMap.put(partnerData, cIDName);
+								candidateNames.add(cIDName);
+							}
+							//participant.put(iPartner + PARTNER_ROLE_SUFFIX, config.implicitRole);
+						}
+					} catch (Exception e) {
+						if(report) {
+							String message = "\tError Parsing Line " + row + ": " + iPartner
+									+ " - " + partnerData;
+							listener.log(message);
+						}
+					}
+				}
+				participant.remove(iPartner);
+
+			}
+		}
+		for(String n : config.columnsIndicatingRespondent) {
+			participant.put(n + "_Role", config.implicitRole);
+			String nameData = participant.get(n).trim();
+			CandidateIdentifier cIDName = new CandidateIdentifier(nameData);
+			
+			if(!candidateNameMap.containsKey(nameData)) {
+				candidateNameMap.put(nameData, cIDName);
+				candidateNames.add(cIDName);
+			}
+			
+		}
+	}
+
+	/**
+	 * Go through each participant and clean them. By clean, we mean check if the names
+	 * and roles are so similar they should really be the same name or role.
+	 * 
+	 * @param pData - the Collection of participant data
+	 */
+	void cleanParticipants(ArrayList<HashMap<String, String>> pData) throws Exception {
+		int counter = 0;
+		cleanCandidates();
+		for(HashMap<String, String> participant : pData) {
+			checkCancelled();
+			listener.setProgress(++counter);
+			cleanParticipant(participant);
+		}
+	}
+
+	/**
+	 * Record in the checkpoint that elaboration is done, or, when resuming, check that it found
+	 * the candidates it found before
+	 * 
+	 * @throws IOException - if the candidates are not those of the checkpoint
+	 */
+	void checkpointElaborated() throws IOException {
+		if(runCheckpoint == null) {
+			return;
+		}
+		int[] recorded = runCheckpoint.getPhase(Checkpoint.ELABORATED);
+		if(recorded == null) {
+			runCheckpoint.recordPhase(Checkpoint.ELABORATED, candidateNames.size(), candidateRoles.size());
+		}
+		else if(recorded[0] != candidateNames.size() || recorded[1] != candidateRoles.size()) {
+			throw new IOException("The data file has " + candidateNames.size() + " name and " + candidateRoles.size()
+					+ " role candidates, but the checkpoint was made with " + recorded[0] + " and " + recorded[1]);
+		}
+		else {
+			listener.log("\tResuming from the checkpoint after: elaboration"
+					+ (runCheckpoint.getPhase(Checkpoint.NAMES) != null ? ", name cleaning" : "")
+					+ (runCheckpoint.getPhase(Checkpoint.ROLES) != null ? ", role cleaning" : "")
+					+ (runCheckpoint.getPhase(Checkpoint.ANONYMIZED) != null ? ", anonymization" : ""));
+		}
+	}
+
+	/**
+	 * The decisions cleaning starts from: those of the cleaning history, if any, and those the
+	 * checkpoint recorded before the run was stopped, in the order they were made.
+	 * 
+	 * @param kind - Checkpoint.NAMES or Checkpoint.ROLES
+	 * @param history - the cleaning history, or null
+	 * @return the history, with the checkpoint's decisions added, or null if there are none
+	 */
+	CleaningHistory resumedDecisions(String kind, CleaningHistory history) {
+		if(runCheckpoint == null || runCheckpoint.getDecisions(kind).isEmpty()) {
+			return history;
+		}
+		CleaningHistory decisions = history == null ? new CleaningHistory(config) : history;
+		int resumed = 0;
+		for(String[] decision : runCheckpoint.getDecisions(kind)) {
+			// The history may already hold them, if it was saved before the run stopped
+			if(decisions.getCleanedID(decision[0]) == null) {
+				decisions.record(decision[0], decision[1]);
+				++resumed;
+			}
+		}
+		listener.log("\tResumed " + resumed + " " + kind + " already cleaned");
+		return decisions;
+	}
+
+	/**
+	 * Clean the candidate names and roles collected while elaborating, so each has its
+	 * cleanedID.  With a cleaning history, only the candidates it doesn't know are searched
+	 * for, and the history is saved with the new decisions.  If cleaning is shared, this cleans
+	 * against a snapshot of the shared decisions, then waits for its turn to commit them,
+	 * cleaning again in the turn the candidates an earlier file's decisions could change.
+	 */
+	void cleanCandidates() throws Exception {
+		if(sharedCleaning == null) {
+			cleanAllCandidates(null);
+			return;
+		}
+		try {
+			SharedCleaning.Snapshot decisions = sharedCleaning.snapshot();
+			cleanAllCandidates(decisions);
+			listener.setStage("Waiting for earlier files...");
+			PerformanceReport.Phase phase = performanceReport.beginPhase("waitForCleaning");
+			sharedCleaning.awaitTurn(cleaningTurn);
+			phase.end(0);
+			cleaningWaitNanos = phase.getWallNanos();
+			SharedCleaning.Snapshot again = sharedCleaning.commit(decisions);
+			if(again != null) {
+				listener.log("\tAn earlier file approved names close to new ones here; cleaning again");
+				uniqueNames = new HashSet<String>();
+				uniqueRoles = new HashSet<String>();
+				cleanAllCandidates(again);
+				// No other file commits during this one's turn, so this commit always succeeds
+				sharedCleaning.commit(again);
+			}
+			if(sharedNames != null && config.isAnonymizing() && config.pseudonymKey.isEmpty()) {
+				sharedAnonymousNames = sharedNames.assign(uniqueNames, listener);
+			}
+		} finally {
+			sharedCleaning.endTurn(cleaningTurn);
+		}
+	}
+
+	/**
+	 * @param shared - the snapshot of shared decisions to clean against, or null to use the
+	 * cleaning history, if any
+	 */
+	private void cleanAllCandidates(SharedCleaning.Snapshot shared) throws Exception {
+		listener.setStage("Cleaning...");
+		listener.log("Cleaning...");
+		final DistanceStatistics nameStatistics = new DistanceStatistics();
+		DistanceStatistics roleStatistics = new DistanceStatistics();
+		File nameHistoryFile = null;
+		File roleHistoryFile = null;
+		final CleaningHistory nameHistory;
+		CleaningHistory roleHistory = null;
+		if(shared == null && !config.cleaningHistory.isEmpty() && config.cleaningMode.equals("cluster")) {
+			SurveyLog.warn("cleaningHistory is not used when cleaningMode is cluster; every candidate is clustered afresh");
+		}
+		if(shared != null) {
+			nameHistory = shared.names;
+			roleHistory = shared.roles;
+		}
+		else if(!config.cleaningHistory.isEmpty()) {
+			nameHistoryFile = new File(config.cleaningHistory + ".names");
+			roleHistoryFile = new File(config.cleaningHistory + ".roles");
+			if(config.rebuildCleaningHistory) {
+				listener.log("\tRebuilding the cleaning history");
+				nameHistory = new CleaningHistory(config);
+				roleHistory = new CleaningHistory(config);
+			}
+			else {
+				nameHistory = CleaningHistory.load(nameHistoryFile, config, listener);
+				roleHistory = CleaningHistory.load(roleHistoryFile, config, listener);
+				listener.log("\tCleaning history: " + nameHistory.size() + " names, " + roleHistory.size() + " roles");
+			}
+		}
+		else {
+			nameHistory = null;
+		}
+		final CleaningHistory nameDecisions = resumedDecisions(Checkpoint.NAMES, nameHistory);
+		CleaningHistory roleDecisions = resumedDecisions(Checkpoint.ROLES, roleHistory);
+
+		if(config.getCleaningThreads() > 1) {
+			// Names and roles are independent, so clean the names on a thread of their own
+			// The first failure stops the other thread, and is the one reported
+			final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+			Thread nameThread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						uniqueNames = CandidateIdentifier.cleanCandidateIDs(Anonymizer.this, candidateNames, uniqueNames, nameStatistics, nameDecisions,
+								runCheckpoint, Checkpoint.NAMES);
+					} catch (Exception e) {
+						failure.compareAndSet(null, e);
+						abandoned = true;
+					}
+				}
+			}, "Name cleaning");
+			nameThread.start();
+			try {
+				uniqueRoles = CandidateIdentifier.cleanCandidateIDs(this, candidateRoles, uniqueRoles, roleStatistics, roleDecisions,
+						runCheckpoint, Checkpoint.ROLES);
+			} catch (Exception e) {
+				failure.compareAndSet(null, e);
+				abandoned = true;
+			} finally {
+				// Never leave the names being cleaned once this run is over
+				boolean interrupted = false;
+				while(nameThread.isAlive()) {
+					try {
+						nameThread.join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+						abandoned = true;
+					}
+				}
+				abandoned = false;
+				if(interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if(failure.get() != null) {
+				throw failure.get();
+			}
+		}
+		else {
+			uniqueNames = CandidateIdentifier.cleanCandidateIDs(this, candidateNames, uniqueNames, nameStatistics, nameDecisions,
+					runCheckpoint, Checkpoint.NAMES);
+			uniqueRoles = CandidateIdentifier.cleanCandidateIDs(this, candidateRoles, uniqueRoles, roleStatistics, roleDecisions,
+					runCheckpoint, Checkpoint.ROLES);
+		}
+		if(runCheckpoint != null) {
+			runCheckpoint.recordPhase(Checkpoint.NAMES);
+			runCheckpoint.recordPhase(Checkpoint.ROLES);
+		}
+
+		if(nameHistoryFile != null) {
+			nameHistory.save(nameHistoryFile);
+			roleHistory.save(roleHistoryFile);
+			lastNameHistory = nameHistory;
+			lastRoleHistory = roleHistory;
+		}
+		listener.log("\tNames: " + nameStatistics.getDistanceEvaluations()
+				+ " distance evaluations, " + nameStatistics.getEvaluationsSaved() + " saved");
+		listener.log("\t\t" + nameStatistics);
+		listener.log("\tRoles: " + roleStatistics.getDistanceEvaluations()
+				+ " distance evaluations, " + roleStatistics.getEvaluationsSaved() + " saved");
+		listener.log("\t\t" + roleStatistics);
+	}
+
+	/**
+	 * Clean a candidate to another name after review: one of its suggestions, or itself.  If a
+	 * cleaning history is kept the decision is recorded in it as well, so the next run cleans
+	 * the candidate the same way, once saveReviews has saved it; the output already written is
+	 * left as it is.
+	 * 
+	 * @param candidate - the reviewed candidate
+	 * @param cleaned - the name it should be cleaned to
+	 * @param role - true if the candidate is a role
+	 * @return true if the decision was recorded in the cleaning history
+	 */
+	boolean acceptReview(CandidateIdentifier candidate, String cleaned, boolean role) {
+		candidate.cleanedID = cleaned;
+		CleaningHistory history = role ? lastRoleHistory : lastNameHistory;
+		if(history == null || !history.correct(candidate.id, cleaned)) {
+			return false;
+		}
+		if(role) {
+			rolesReviewed = true;
+		}
+		else {
+			namesReviewed = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Save the decisions acceptReview has recorded since the last save.  Saving rewrites the
+	 * whole history, so this is done once, when the review is over, rather than after every
+	 * decision.
+	 * 
+	 * @return true if a history was saved
+	 * @throws IOException - if the history can't be written
+	 */
+	boolean saveReviews() throws IOException {
+		boolean saved = false;
+		if(namesReviewed) {
+			lastNameHistory.save(new File(config.cleaningHistory + ".names"));
+			namesReviewed = false;
+			saved = true;
+		}
+		if(rolesReviewed) {
+			lastRoleHistory.save(new File(config.cleaningHistory + ".roles"));
+			rolesReviewed = false;
+			saved = true;
+		}
+		return saved;
+	}
+	
+	
+
+	/**
+	 * Helper function per participant to clean each participant, we check against
+	 * the existing set of names and roles and see if something close enough already exists.
+	 * 
+	 * @param participant
+	 */
+	void cleanParticipant(HashMap<String, String> participant) {
+		for(String iPartner : config.columnsToAnonymize) {
+			String iPartnerName = iPartner + PARTNER_NAME_SUFFIX;
+			String iPartnerRole = iPartner + PARTNER_ROLE_SUFFIX;
+			cleanParticipantInfo(participant, iPartnerName, candidateNameMap);
+			cleanParticipantInfo(participant, iPartnerRole, candidateRoleMap);
+		}
+		for(String respondent : config.columnsIndicatingRespondent) {
+			cleanParticipantInfo(participant, respondent, candidateNameMap);
+			cleanParticipantInfo(participant, respondent + PARTNER_ROLE_SUFFIX, candidateRoleMap);
+		}
+	}
+
+	/**
+	 * We take a given participant, a data element, and a set of existing data entries that the
+	 * data element should be compared against.
+	 * 
+	 * @param participant - data for each participant
+	 * @param key - the key to data that should be checked
+	 * @param uniqueSet - unique values that should be compared against
+	 */
+	void cleanParticipantInfo(HashMap<String, String> participant, String key, Map<String, CandidateIdentifier> candidateMap) {
+		if(participant.containsKey(key)) {
+			String info = participant.get(key);
+			String cleanedInfo = info;
+			if(SurveyLog.isEnabled(SurveyLog.Level.TRACE)) {
+				SurveyLog.trace("Searching for " + info + " in map with " + candidateMap.size() + " entries.");
+			}
+			if(candidateMap.containsKey(info)) {
+				cleanedInfo = candidateMap.get(info).cleanedID;
+			}
+			cellsCleaned.increment();
+			if(!info.equals(cleanedInfo)) {
+				cellsChanged.increment();
+			}
+			if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+				SurveyLog.debug("Cleaning: " + info + " - " + cleanedInfo);
+				listener.log("\t" + key + " - " + info + ":" + cleanedInfo);
+			}
+			participant.put(key + CLEAN_EXTENSION, cleanedInfo);
+		}
+	}
+
+	/**
+	 * Go through each unique name found in the set and create an anonymous version
+	 * Then go through each participant and create anonymous versions.
+	 * 
+	 * @param pData
+	 * @throws IOException - if the pseudonym registry can't be read or written
+	 */
+	void anonymizeParticipants(ArrayList<HashMap<String, String>> pData) throws IOException {
+		int counter = 0;
+		listener.setStage("Anonymizing...");
+		listener.log("Anonymizing...");
+
+		PerformanceReport.Phase phase = performanceReport.beginPhase("anonymizeParticipants");
+		HashMap<String, String> anonymousNames = createAnonymousNames();
+		for(HashMap<String, String> participant : pData) {
+			checkCancelled();
+			listener.setProgress(++counter);
+			anonymizeParticipant(anonymousNames, participant);
+		}
+		phase.set("pseudonyms", anonymousNames.size()).end(pData.size());
+
+	}
+
+	/**
+	 * Create an anonymous name for each unique cleaned name, other than the unknown actor.  With
+	 * a pseudonym key, each is derived from the name; with a pseudonym registry, names it
+	 * already holds keep their pseudonym and new names are added to it; only this run's names
+	 * are looked up, however large the registry has grown.
+	 * 
+	 * @return anonymous names, keyed by cleaned name
+	 * @throws IOException - if the pseudonym key or registry can't be read or written
+	 */
+	HashMap<String, String> createAnonymousNames() throws IOException {
+		if(!config.pseudonymKey.isEmpty()) {
+			if(!config.pseudonymRegistry.isEmpty()) {
+				SurveyLog.warn("Both pseudonymKey and pseudonymRegistry are set; the registry is not used.");
+			}
+			return createKeyedNames(KeyedPseudonyms.open(new File(config.pseudonymKey)));
+		}
+		if(sharedAnonymousNames != null) {
+			return sharedAnonymousNames;
+		}
+		if(sharedNames != null) {
+			return sharedNames.assign(uniqueNames, listener);
+		}
+		HashMap<String, String> anonymousNames = new HashMap<String,String>();
+		PseudonymRegistry registry = null;
+		if(!config.pseudonymRegistry.isEmpty()) {
+			registry = PseudonymRegistry.open(new File(config.pseudonymRegistry));
+			registry.ensureCapacity(uniqueNames.size());
+		}
+		try {
+			int nameCounter = 0;
+			for(String name : uniqueNames) {
+				// Skip the Unknown Actor
+				if(!name.equals(UNKNOWN_ACTOR)) {
+					int number;
+					if(registry == null) {
+						number = ++nameCounter;
+					}
+					else {
+						int known = registry.size();
+						number = registry.getOrAssign(name);
+						if(registry.size() == known) {
+							pseudonymsReused.increment();
+						}
+						else {
+							pseudonymsCreated.increment();
+						}
+					}
+					String anonName = "Name" + number;
+					listener.log("\t" + name + ":" + anonName);
+					anonymousNames.put(name, anonName);
+				}
+			}
+		} finally {
+			if(registry != null) {
+				registry.close();
+			}
+		}
+		return anonymousNames;
+	}
+
+	/**
+	 * @param pseudonyms - the keyed pseudonyms to give out
+	 * @return anonymous names, keyed by cleaned name
+	 */
+	HashMap<String, String> createKeyedNames(KeyedPseudonyms pseudonyms) {
+		HashMap<String, String> anonymousNames = new HashMap<String,String>();
+		for(String name : uniqueNames) {
+			// Skip the Unknown Actor
+			if(!name.equals(UNKNOWN_ACTOR)) {
+				String anonName = pseudonyms.getPseudonym(name);
+				listener.log("\t" + name + ":" + anonName);
+				anonymousNames.put(name, anonName);
+			}
+		}
+		return anonymousNames;
+	}
+
+	/**
+	 * Go through all the potential partners and create anonymous versions by using the anonymous
+	 * hashmap lookup via the cleaned name.
+	 * 
+	 * We don't remove the cleaned name, we just add the anonymous one at this point.
+	 * 
+	 * @param anonymousNames
+	 * @param participant
+	 */
+	void anonymizeParticipant(HashMap<String, String> anonymousNames, HashMap<String, String> participant) {
+
+		for(String iPartner : config.columnsToAnonymize) {
+			String iPartnerName = iPartner + PARTNER_NAME_SUFFIX;
+			String iPartnerCleaned = iPartnerName + CLEAN_EXTENSION;
+			String iPartnerAnonymous = iPartnerName + ANON_EXTENSION;
+			if(participant.containsKey(iPartnerCleaned)) {
+				if(anonymousNames.containsKey(participant.get(iPartnerCleaned))) {
+					String anonName = anonymousNames.get(participant.get(iPartnerCleaned));
+					participant.put(iPartnerAnonymous, anonName);
+				}
+				else {
+					participant.put(iPartnerAnonymous, UNKNOWN_ACTOR);
+				}
+			}
+		}
+
+		for(String n : config.columnsIndicatingRespondent) {
+			String pNameCleaned = n  + CLEAN_EXTENSION;
+			String pNameAnon = n + ANON_EXTENSION;
+			if(participant.containsKey(pNameCleaned)) {
+				//System.out.println("Participant did include: " + pNameCleaned);
+				String pAnon = anonymousNames.get(participant.get(pNameCleaned));
+				//System.out.println(participant.get(pNameCleaned) + ":" + pAnon);
+				participant.put(pNameAnon, pAnon);
+			}
+			else {
+				SurveyLog.debug("Participant did not include: " + pNameCleaned);
+			}
+		}
+	}
+
+	/**
+	 * We keep the data in each dictionary, but we remove our ability to access it, while adding
+	 * the anonymous version to the header.
+	 */
+	void removeHeaderElements() {
+		for(String iPartner : config.columnsToAnonymize) {
+			String iPartnerName = iPartner + PARTNER_NAME_SUFFIX;
+			String iPartnerNameCleaned = iPartnerName + CLEAN_EXTENSION;
+			String iPartnerNameAnon = iPartnerName + ANON_EXTENSION;
+			if(headers.contains(iPartner)) {
+				headers.remove(iPartner);
+			}
+			if(headers.contains(iPartnerName)) {
+				headers.remove(iPartnerName);
+			}
+			if(headers.contains(iPartnerNameCleaned)) {
+				headers.remove(iPartnerNameCleaned);
+			}
+
+			String iPartnerRole = iPartner + PARTNER_ROLE_SUFFIX;
+			String iPartnerRoleCleaned = iPartnerRole + CLEAN_EXTENSION;
+
+			headers.add(iPartnerNameAnon);
+			headers.add(iPartnerRole);
+			headers.add(iPartnerRoleCleaned);
+		}
+
+		for(String n : config.columnsIndicatingRespondent) {
+			headers.remove(n);
+			headers.remove(n  + CLEAN_EXTENSION);
+			headers.add(n + ANON_EXTENSION);
+			headers.add(n + PARTNER_ROLE_SUFFIX);
+			headers.add(n + PARTNER_ROLE_SUFFIX + CLEAN_EXTENSION);
+		}
+	}
+
+	/**
+	 * We sort the final header here and write out the data.
+	 * 
+	 * @param f - the output file
+	 * @param pData - the set of participant data
+	 * @throws IOException - in case there is an error with writing the file
+	 */
+	void writeDataFile(File f, ArrayList<HashMap<String, String>> pData) throws IOException {
+		PerformanceReport.Phase phase = performanceReport.beginPhase("writeDataFile");
+		int counter = 0;
+		listener.setStage("Writing...");
+		listener.log("Writing...");
+
+		RowWriter writer = writeHeader(f);
+		try {
+			for(HashMap<String, String> participant : pData) {
+				checkCancelled();
+				listener.setProgress(++counter);
+				writer.writeRow(participant);
+			}
+		} finally {
+			writer.close();
+		}
+		logWriteThroughput(writer);
+		phase.set("bytesWritten", writer.getBytesWritten()).end(counter);
+	}
+
+	/**
+	 * Settle the final, sorted header, open the output file and write the header to it
+	 * 
+	 * @param f - the file to write
+	 * @return the writer to write each participant with, in the order of the header
+	 * @throws IOException - in case there is an error with writing the file
+	 */
+	RowWriter writeHeader(File f) throws IOException {
+		if(config.anonymize) {
+			removeHeaderElements();
+		}
+		Collections.sort(headers);
+
+		RowWriter writer;
+		int threads = config.getWritingThreads();
+		if(threads > 1) {
+			writer = new ParallelRowWriter(new FileOutputStream(f), headers, config.dataDelimiter, threads);
+		}
+		else {
+			writer = new RowEncoder(new FileOutputStream(f), headers, config.dataDelimiter);
+		}
+		try {
+			writer.writeHeader();
+		} catch (IOException e) {
+			writer.close();
+			throw e;
+		}
+		return writer;
+	}
+
+	/**
+	 * Report how much was written, and how fast
+	 * 
+	 * @param writer - the writer the output was written with
+	 */
+	void logWriteThroughput(RowWriter writer) {
+		bytesWritten.add(writer.getBytesWritten());
+		listener.log(String.format("\tWrote %.1f MB at %.1f MB/s", writer.getBytesWritten() / 1048576.0,
+				writer.getMegabytesPerSecond()));
+	}
+}
@@ -0,0 +1,433 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Anonymizes many data files at once, such as the county files of a survey wave:
+ * 
+ * 	java morgan.SurveyInference.Anonymizer.AnonymizerBatch [-config configFile] [-out folder] [-cleaning n] input...
+ * 
+ * Each input is a data file, a folder, whose .txt files are all taken, or a pattern for the
+ * names of the files in a folder, such as "wave3/county_*.txt" (quoted, so the shell leaves it
+ * alone).  Earlier outputs, Anonymized_ and Cleaned_ files, are never taken from a folder.
+ * Without -out, each output goes next to its data file, named as the window would name it.
+ * 
+ * Every file gets an Anonymizer of its own, on a thread of its own: a virtual thread where the
+ * JVM has them (Java 21 on), otherwise an ordinary one.  Only -cleaning files (by default, one
+ * per core) are read, cleaned and written at once, as cleaning is what keeps the processor
+ * busy and a file is held in memory until it is written; the files start in the order given,
+ * each as soon as an earlier one is done.  The files share their cleaning decisions (see
+ * SharedCleaning), so a name is matched against the names approved in every file before it,
+ * and "Jonn Smith" in one file is cleaned to "Jon Smith" from another.  Each file cleans on
+ * cleaningThreads, alongside the others, and commits its decisions in the order given.  All
+ * the files share one PseudonymDictionary too, and each file's pseudonyms are given out when
+ * it commits, so a person gets the same pseudonym in every file, and the same batch gives the
+ * same pseudonyms every time, however many files clean at once.  The one
+ * exception is cleaningMode cluster, which keeps no decisions: each file is then clustered on
+ * its own, and names spelt differently in different files get different pseudonyms.
+ * 
+ * A cleaningHistory is read before the batch and written after it.  A checkpoint is meant for
+ * one file at a time, so a batch doesn't use one.  When every file is done, each file's
+ * timings and the throughput of the batch are printed.  The exit status is one of
+ * AnonymizerCLI's.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class AnonymizerBatch {
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * @param args - the command-line arguments
+	 * @return the exit status
+	 */
+	static int run(String[] args) {
+		File configFile = null;
+		File outputFolder = null;
+		int cleaning = Runtime.getRuntime().availableProcessors();
+		ArrayList<String> inputs = new ArrayList<String>();
+		for(int i = 0; i < args.length; ++i) {
+			if(args[i].equals("-config") && i + 1 < args.length) {
+				configFile = new File(args[++i]);
+			}
+			else if(args[i].equals("-out") && i + 1 < args.length) {
+				outputFolder = new File(args[++i]);
+			}
+			else if(args[i].equals("-cleaning") && i + 1 < args.length) {
+				try {
+					cleaning = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					cleaning = 0;
+				}
+				if(cleaning < 1) {
+					return usage("-cleaning needs a positive number of files, but " + args[i] + " was found");
+				}
+			}
+			else if(args[i].startsWith("-")) {
+				return usage("Unknown option " + args[i]);
+			}
+			else {
+				inputs.add(args[i]);
+			}
+		}
+		if(inputs.isEmpty()) {
+			return usage("No data files given");
+		}
+		if(configFile == null && new File("anonymizerConfig.txt").isFile()) {
+			configFile = new File("anonymizerConfig.txt");
+		}
+
+		ConsoleListener console = new ConsoleListener();
+		AnonymizerConfig config = AnonymizerConfig.defaults();
+		if(configFile != null) {
+			try {
+				config = AnonymizerMain.readConfigurationFile(configFile, console);
+			} catch (Exception e) {
+				System.err.println("Error reading configuration file " + configFile + ": " + e);
+				return AnonymizerCLI.EXIT_CONFIGURATION;
+			}
+			if(console.configurationErrors > 0) {
+				System.err.println(console.configurationErrors + " error(s) in configuration file " + configFile);
+				return AnonymizerCLI.EXIT_CONFIGURATION;
+			}
+		}
+		if(config.hasCheckpoint()) {
+			SurveyLog.warn("checkpoint is not used in a batch; a stopped batch starts over");
+			config = config.with("checkpoint", "");
+		}
+		if(config.cleaningMode.equals("cluster")) {
+			SurveyLog.warn("cleaningMode is cluster, so each file is clustered on its own; names spelt differently in different files get different pseudonyms");
+		}
+		if(!config.isAnonymizing()) {
+			console.log("Based on current configuration, entries will NOT be anonymized.");
+		}
+		if(outputFolder != null && !outputFolder.isDirectory()) {
+			return usage("Output folder " + outputFolder + " doesn't exist");
+		}
+
+		// Settle every file and its output before starting any
+		List<File> dataFiles = new ArrayList<File>();
+		List<File> outputFiles = new ArrayList<File>();
+		HashSet<File> outputsSeen = new HashSet<File>();
+		Anonymizer namer = new Anonymizer(config, console);
+		try {
+			for(String input : inputs) {
+				List<File> found = findDataFiles(input);
+				if(found.isEmpty()) {
+					return usage("No data files found for " + input);
+				}
+				for(File dataFile : found) {
+					File outputFile = namer.getOutputFile(dataFile);
+					if(outputFolder != null) {
+						outputFile = new File(outputFolder, outputFile.getName());
+					}
+					if(!outputsSeen.add(outputFile.getCanonicalFile())) {
+						return usage("Two data files would both be written to " + outputFile);
+					}
+					dataFiles.add(dataFile);
+					outputFiles.add(outputFile);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Error finding the data files: " + e);
+			return AnonymizerCLI.EXIT_FAILURE;
+		}
+
+		List<FileRun> runs;
+		long batchNanos;
+		PseudonymDictionary dictionary = null;
+		try {
+			SharedCleaning decisions = SharedCleaning.open(config, dataFiles.size(), cleaning, console);
+			// With a pseudonym key, each name's pseudonym comes from the key, not a dictionary
+			if(config.pseudonymKey.isEmpty()) {
+				dictionary = PseudonymDictionary.open(config);
+			}
+			SurveyLog.resetCounters();
+			long start = System.nanoTime();
+			runs = runAll(config, dataFiles, outputFiles, dictionary, decisions);
+			batchNanos = System.nanoTime() - start;
+			decisions.save();
+		} catch (Exception e) {
+			System.err.println("Error running the batch: " + e);
+			e.printStackTrace();
+			return AnonymizerCLI.EXIT_FAILURE;
+		} finally {
+			if(dictionary != null) {
+				try {
+					dictionary.close();
+				} catch (IOException e) {
+					System.err.println("Error closing the pseudonym registry: " + e);
+				}
+			}
+			SurveyLog.flush();
+		}
+
+		int failed = report(runs, batchNanos, cleaning);
+		console.log("Summary:");
+		for(String line : SurveyLog.getCounterSummary().split("\n")) {
+			console.log("\t" + line);
+		}
+		SurveyLog.flush();
+		return failed == 0 ? AnonymizerCLI.EXIT_SUCCESS : AnonymizerCLI.EXIT_FAILURE;
+	}
+
+	/**
+	 * Run every file on a thread of its own, and wait for them all
+	 * 
+	 * @param config - the settings of every file
+	 * @param dataFiles - the data files
+	 * @param outputFiles - where each goes
+	 * @param dictionary - the name dictionary the files share, or null
+	 * @param cleaning - the cleaning decisions the files share, which also lets them in
+	 * @return how each file went, in the order given
+	 * @throws InterruptedException - if the batch is interrupted while waiting
+	 */
+	static List<FileRun> runAll(AnonymizerConfig config, List<File> dataFiles, List<File> outputFiles,
+			PseudonymDictionary dictionary, SharedCleaning cleaning) throws InterruptedException {
+		ExecutorService executor = newThreadPerFileExecutor();
+		List<Future<FileRun>> futures = new ArrayList<Future<FileRun>>();
+		for(int i = 0; i < dataFiles.size(); ++i) {
+			Anonymizer engine = new Anonymizer(config, new FileListener(dataFiles.get(i).getName()));
+			engine.shareNames(dictionary);
+			engine.shareCleaning(cleaning, i);
+			futures.add(executor.submit(new FileRun(engine, dataFiles.get(i), outputFiles.get(i), cleaning, i)));
+		}
+		executor.shutdown();
+
+		List<FileRun> runs = new ArrayList<FileRun>();
+		for(Future<FileRun> future : futures) {
+			try {
+				runs.add(future.get());
+			} catch (ExecutionException e) {
+				// FileRun catches what its run throws, so this can't happen
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * @return an executor that starts a virtual thread for each task, or, before Java 21, an
+	 * ordinary thread
+	 */
+	static ExecutorService newThreadPerFileExecutor() {
+		try {
+			Method virtualExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)virtualExecutor.invoke(null);
+		} catch (Exception e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * @return true if newThreadPerFileExecutor starts virtual threads
+	 */
+	static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param input - a data file, a folder, or a pattern for file names in a folder
+	 * @return the data files it names, in name order
+	 * @throws IOException - if a folder can't be read
+	 */
+	static List<File> findDataFiles(String input) throws IOException {
+		File file = new File(input);
+		List<File> found = new ArrayList<File>();
+		if(file.isFile()) {
+			found.add(file);
+			return found;
+		}
+		File folder;
+		PathMatcher matcher;
+		if(file.isDirectory()) {
+			folder = file;
+			matcher = FileSystems.getDefault().getPathMatcher("glob:*.{txt,TXT}");
+		}
+		else if(file.getName().contains("*") || file.getName().contains("?") || file.getName().contains("[")) {
+			folder = file.getAbsoluteFile().getParentFile();
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+		}
+		else {
+			return found;
+		}
+		File[] files = folder.listFiles();
+		if(files == null) {
+			throw new IOException("Could not read the folder " + folder);
+		}
+		Arrays.sort(files);
+		LinkedHashSet<File> unique = new LinkedHashSet<File>();
+		for(File candidate : files) {
+			String name = candidate.getName();
+			if(candidate.isFile() && matcher.matches(candidate.toPath().getFileName())
+					&& !name.startsWith("Anonymized_") && !name.startsWith("Cleaned_")) {
+				unique.add(candidate);
+			}
+		}
+		found.addAll(unique);
+		return found;
+	}
+
+	/**
+	 * Print each file's timings and the throughput of the batch
+	 * 
+	 * @param runs - how each file went
+	 * @param batchNanos - how long the batch took
+	 * @param cleaning - how many files could be in at once
+	 * @return how many files failed
+	 */
+	static int report(List<FileRun> runs, long batchNanos, int cleaning) {
+		System.out.println();
+		System.out.println(String.format("%-40s %10s %10s %10s %10s %10s  %s", "File", "Rows", "MB", "Seconds", "Waited s", "MB/s", "Result"));
+		long rows = 0;
+		long bytes = 0;
+		int failed = 0;
+		for(FileRun run : runs) {
+			double seconds = run.wallNanos / 1e9;
+			double megabytes = run.dataFile.length() / 1048576.0;
+			System.out.println(String.format("%-40s %10d %10.1f %10.2f %10.2f %10.1f  %s", run.dataFile.getName(), run.rows, megabytes,
+					seconds, (run.waitNanos + run.engine.getCleaningWaitNanos()) / 1e9, seconds > 0 ? megabytes / seconds : 0,
+					run.failure == null ? run.outputFile.getPath() : "FAILED: " + run.failure));
+			if(run.failure == null) {
+				rows += run.rows;
+				bytes += run.dataFile.length();
+			}
+			else {
+				++failed;
+			}
+		}
+		double seconds = batchNanos / 1e9;
+		System.out.println();
+		System.out.println(String.format("%d files (%d failed) in %.2f s on %s threads, %d cleaning at a time: %d rows, %.1f MB, %.0f rows/s, %.1f MB/s",
+				runs.size(), failed, seconds, hasVirtualThreads() ? "virtual" : "platform", cleaning, rows, bytes / 1048576.0,
+				seconds > 0 ? rows / seconds : 0, seconds > 0 ? bytes / 1048576.0 / seconds : 0));
+		return failed;
+	}
+
+	/**
+	 * One file of the batch: waits to be let in, runs its Anonymizer, and records how long it
+	 * took and whether it failed, so one bad file doesn't stop the others.  A file that fails
+	 * before its turn to commit its cleaning gives the turn up, and every file gives up its
+	 * place when done, so the files after it aren't kept waiting.
+	 */
+	static class FileRun implements Callable<FileRun> {
+
+		final Anonymizer engine;
+		final File dataFile;
+		final File outputFile;
+		final SharedCleaning cleaning;
+		final int turn;
+		long rows = 0;
+		long wallNanos = 0;
+		long waitNanos = 0;
+		Exception failure = null;
+
+		FileRun(Anonymizer theEngine, File theDataFile, File theOutputFile, SharedCleaning theCleaning, int theTurn) {
+			engine = theEngine;
+			dataFile = theDataFile;
+			outputFile = theOutputFile;
+			cleaning = theCleaning;
+			turn = theTurn;
+		}
+
+		public FileRun call() {
+			long start = System.nanoTime();
+			try {
+				cleaning.enter(turn);
+				waitNanos = System.nanoTime() - start;
+				engine.run(dataFile, outputFile);
+			} catch (Exception e) {
+				failure = e;
+				SurveyLog.error("Error processing " + dataFile + ": " + e);
+			} finally {
+				cleaning.endTurn(turn);
+				cleaning.leave(turn);
+			}
+			wallNanos = System.nanoTime() - start;
+			rows = ((FileListener)engine.listener).rows;
+			return this;
+		}
+	}
+
+	/**
+	 * Logs a file's run, each line marked with the file's name, so the files' logs can be told
+	 * apart
+	 */
+	static class FileListener extends ConsoleListener {
+
+		private final String name;
+
+		/**
+		 * How many rows the file has, once they have been read
+		 */
+		volatile int rows = 0;
+
+		FileListener(String theName) {
+			name = theName;
+		}
+
+		@Override
+		public void setProgressMaximum(int maximum) {
+			rows = maximum;
+		}
+
+		@Override
+		public void log(String message) {
+			SurveyLog.info("[" + name + "] " + message);
+		}
+	}
+
+	private static int usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: java " + AnonymizerBatch.class.getName() + " [-config configFile] [-out folder] [-cleaning n] input...");
+		return AnonymizerCLI.EXIT_USAGE;
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+
+/**
+ * Runs the Anonymizer without a display, for batch servers:
+ * 
+ * 	java morgan.SurveyInference.Anonymizer.AnonymizerCLI [-config configFile] [--resume] dataFile [outputFile]
+ * 
+ * Without -config, anonymizerConfig.txt is used if it is in the working directory.  Without an
+ * output file, the output goes next to the data file, named as the window would name it.
+ * With --resume, a run stopped part way through carries on from the checkpoint the
+ * configuration names.
+ * 
+ * Nothing here touches AWT or Swing.  The exit status is EXIT_SUCCESS, or one of the other
+ * EXIT_ codes below.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class AnonymizerCLI {
+
+	static final int EXIT_SUCCESS = 0;
+	/**
+	 * The arguments could not be understood
+	 */
+	static final int EXIT_USAGE = 1;
+	/**
+	 * The configuration file could not be read, or had errors in it.  The window carries on
+	 * with defaults, but with no one to warn, a batch run stops.
+	 */
+	static final int EXIT_CONFIGURATION = 2;
+	/**
+	 * The data file could not be read, processed or written
+	 */
+	static final int EXIT_FAILURE = 3;
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * @param args - the command-line arguments
+	 * @return the exit status
+	 */
+	static int run(String[] args) {
+		File configFile = null;
+		File dataFile = null;
+		File outputFile = null;
+		boolean resume = false;
+		for(int i = 0; i < args.length; ++i) {
+			if(args[i].equals("-config") && i + 1 < args.length) {
+				configFile = new File(args[++i]);
+			}
+			else if(args[i].equals("--resume") || args[i].equals("-resume")) {
+				resume = true;
+			}
+			else if(args[i].startsWith("-")) {
+				return usage("Unknown option " + args[i]);
+			}
+			else if(dataFile == null) {
+				dataFile = new File(args[i]);
+			}
+			else if(outputFile == null) {
+				outputFile = new File(args[i]);
+			}
+			else {
+				return usage("Too many arguments");
+			}
+		}
+		if(dataFile == null) {
+			return usage("No data file given");
+		}
+		if(configFile == null && new File("anonymizerConfig.txt").isFile()) {
+			configFile = new File("anonymizerConfig.txt");
+		}
+
+		ConsoleListener console = new ConsoleListener();
+		AnonymizerConfig config = AnonymizerConfig.defaults();
+		if(configFile != null) {
+			try {
+				config = AnonymizerMain.readConfigurationFile(configFile, console);
+			} catch (Exception e) {
+				System.err.println("Error reading configuration file " + configFile + ": " + e);
+				return EXIT_CONFIGURATION;
+			}
+			if(console.configurationErrors > 0) {
+				System.err.println(console.configurationErrors + " error(s) in configuration file " + configFile);
+				return EXIT_CONFIGURATION;
+			}
+		}
+		if(resume && !config.hasCheckpoint()) {
+			return usage("--resume needs a checkpoint file set in the configuration");
+		}
+		if(!config.isAnonymizing()) {
+			console.log("Based on current configuration, entries will NOT be anonymized.");
+		}
+
+		Anonymizer engine = new Anonymizer(config, console);
+		try {
+			if(outputFile == null) {
+				outputFile = engine.getOutputFile(dataFile);
+			}
+			AnonymizerMain.run(engine, dataFile, outputFile, resume);
+		} catch (Exception e) {
+			System.err.println("Error processing " + dataFile + ": " + e);
+			e.printStackTrace();
+			return EXIT_FAILURE;
+		}
+		console.log("Done! Output written to " + outputFile);
+		return EXIT_SUCCESS;
+	}
+
+	private static int usage(String problem) {
+		System.err.println(problem);
+		System.err.println("Usage: java " + AnonymizerCLI.class.getName() + " [-config configFile] [--resume] dataFile [outputFile]");
+		return EXIT_USAGE;
+	}
+
+}
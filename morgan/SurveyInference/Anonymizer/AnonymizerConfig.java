@@ -0,0 +1,548 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * The settings of an Anonymizer, read from a configuration file such as anonymizerConfig.txt:
+ * one "flag: value" per line, flags in any case.
+ * 
+ * 	columnsToAnonymize: Quest14a,Quest14b,Quest14c,Quest14d,Quest14e
+ * 	columnsIndicatingRespondent: respondent,opername
+ * 	dataDelimiter: \t
+ * 	intraColumnDelimiter: :
+ * 	implicitRole: Grower
+ * 	columnHasRole: true
+ * 	anonymize: true
+ * 	cleaningThresholds: 3,8,12
+ * 	cleaningIndex: bktree
+ * 	cleaningMode: greedy
+ * 	cleaningSuggestions: 3
+ * 	cleaningBlocking: soundex,metaphone,prefix
+ * 	blockingRecallSample: 0.05
+ * 	cleaningThreads: 1
+ * 	writingThreads: 1
+ * 	streaming: false
+ * 	logLevel: INFO
+ * 	pseudonymRegistry: waves/pseudonyms
+ * 	pseudonymKey: survey.key
+ * 	checkpoint: run.checkpoint
+ * 	checkpointInterval: 10000
+ * 	cleaningHistory: waves/cleaning
+ * 	rebuildCleaningHistory: false
+ * 
+ * A configuration never changes once made, so any number of Anonymizers may share one, on
+ * any threads.  with() makes a copy with one flag changed, checked just as the file is.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class AnonymizerConfig {
+
+	/**
+	 * This is the list of the questions that indicate interaction partners.
+	 */
+	final String[] columnsToAnonymize;
+
+	/**
+	 * The operator's name
+	 */
+	final String[] columnsIndicatingRespondent;
+
+	/**
+	 * This indicates the data separation in the file, tab-delimited
+	 */
+	final String dataDelimiter;
+
+	/**
+	 * This indicates the separator between names and roles in partners
+	 */
+	final String entryDelimiter;
+
+	/**
+	 * Respondents are, by default, growers
+	 */
+	final String implicitRole;
+
+	/**
+	 * This variable controls whether the fields identifed in the interactionPartners
+	 * variable are expected to have two portions to the answer, separated by the
+	 * entryDelimiter variable.
+	 * 
+	 * If true, then entries that do not have the entry delimiter are assumed to be less
+	 * identifying information that does not require anonymization.
+	 * 
+	 * If false, then the entire entry is considered and needs to be anonymized.
+	 */
+	final boolean columnHasRole;
+
+	/**
+	 * This variable controls whether, post reconcliation, the tool should create
+	 * anonymous tokens to replace all unique values and then delete original data
+	 * from memory.
+	 * 
+	 * By default, this is true.  If this is not true, a warning is presented to the
+	 * GUI operator to indicate that anonymization is not on - given the default assumption
+	 * inherent in the name of the tool (Anonymizer)
+	 */
+	final boolean anonymize;
+
+	/**
+	 * This array is used to control how much distance there needs to be between strings
+	 * to consider they are similar 'enough'.  By default, we use exact matches at 3 or less.
+	 * Distance 1 for strings of length 4 to 8; Distance 2 for strings length 9 to 12, and 
+	 * Distance 3 for Strings longer than 12.  Null uses exact matches only.
+	 */
+	final int[] cleaningThresholds;
+
+	/**
+	 * The index used to find approved names close to a candidate while cleaning.  "bktree" works
+	 * for any threshold; "symspell" uses a deletion dictionary, which is faster for the small
+	 * thresholds we use (and for roles in particular) at the cost of more memory.
+	 */
+	final String cleaningIndex;
+
+	/**
+	 * How candidates are merged.  "greedy" (the default) replaces each candidate with the closest
+	 * name approved before it; "cluster" links every pair of similar names and cleans each group
+	 * of linked names to one representative (see ClusterCleaner), so chains of near misses end up
+	 * as one name.  Cluster mode runs on one thread and doesn't use a cleaning history.  It
+	 * searches every candidate rather than only the approved names, so on large rosters it is
+	 * best paired with the symspell index.
+	 */
+	final String cleaningMode;
+
+	/**
+	 * How many alternatives to offer for each candidate in the review tabs: the approved names
+	 * closest to it other than the one it was cleaned to, found after cleaning (see Suggestions).
+	 * The search looks a little further than cleaning does, so on large rosters it can take
+	 * longer than the cleaning itself.  0 (the default) offers none and skips the search.
+	 */
+	final int cleaningSuggestions;
+
+	/**
+	 * Which blocks, if any, cleaning limits its comparisons to: any of "soundex", "metaphone"
+	 * and "prefix" (the first letter and a similar length), comma separated.  With blocking a
+	 * candidate is only compared with approved names sharing a block, which is much faster on
+	 * large rosters but can miss a merge the full search would find.  Empty (the default) or
+	 * "off" uses cleaningIndex without blocking.
+	 */
+	final String cleaningBlocking;
+
+	/**
+	 * The share of candidates, from 0 to 1, that blocking also checks against a full scan to
+	 * count the merges it lost.  0 (the default) checks none.
+	 */
+	final double blockingRecallSample;
+
+	/**
+	 * How many threads cleaning may use.  With 1 (the default) names and roles are cleaned one
+	 * after the other on a single thread; with more, they are cleaned at the same time and the
+	 * search for each candidate's closest approved name runs in parallel.  0 uses every core.
+	 * The result is the same either way.
+	 */
+	final int cleaningThreads;
+
+	/**
+	 * How many threads may format output rows.  With 1 (the default) rows are written on the
+	 * thread that produces them; with more, they are formatted in chunks on a pool and written
+	 * in order by a thread of their own (see ParallelRowWriter).  0 uses every core.  The output
+	 * is the same either way.
+	 */
+	final int writingThreads;
+
+	/**
+	 * If true, the data file is read twice instead of being held in memory: once to collect
+	 * the names and roles to clean, and once more to write each row out as it is anonymized.
+	 * Use this for exports too large to fit in memory.  The output is the same.
+	 */
+	final boolean streaming;
+
+	/**
+	 * The level SurveyLog should log at, or null to leave it as it is.  The level is shared by
+	 * everything in the JVM, so it is up to the tool, not the Anonymizer, to set it.
+	 */
+	final SurveyLog.Level logLevel;
+
+	/**
+	 * If set, the pseudonyms given out are kept in this registry (see PseudonymRegistry), so a
+	 * name seen in an earlier survey wave gets the same pseudonym again, and only new names are
+	 * numbered.  Empty, the default, numbers the names of each run afresh.
+	 */
+	final String pseudonymRegistry;
+
+	/**
+	 * If set, the file holding the secret key pseudonyms are derived from (see KeyedPseudonyms):
+	 * a name gets the same pseudonym in every run, file and partition anonymized with that key,
+	 * without a registry.  Takes the place of pseudonymRegistry.
+	 */
+	final String pseudonymKey;
+
+	/**
+	 * If set, the run's progress is recorded in this checkpoint file after each phase and every
+	 * checkpointInterval candidates while cleaning (see Checkpoint), and deleted once the run
+	 * completes.  A resumed run carries on from it.  Empty, the default, records nothing.
+	 */
+	final String checkpoint;
+
+	/**
+	 * How many candidates are cleaned between checkpoint records
+	 */
+	final int checkpointInterval;
+
+	/**
+	 * If set, the cleaning decisions of every run are kept in this history (see CleaningHistory),
+	 * in one file for names and one for roles, and a run only searches for the candidates no
+	 * earlier run has seen.  Empty, the default, cleans every candidate afresh.
+	 */
+	final String cleaningHistory;
+
+	/**
+	 * If true, the cleaning history is ignored and rewritten from this run's candidates alone
+	 */
+	final boolean rebuildCleaningHistory;
+
+	/**
+	 * The flags as given, by lower-case flag, so with() can make a copy with one changed
+	 */
+	private final Map<String, String[]> flags;
+
+	/**
+	 * The configuration with every flag at its default
+	 */
+	private static final AnonymizerConfig DEFAULTS = new AnonymizerConfig(new LinkedHashMap<String, String[]>(), "", null);
+
+	/**
+	 * Check the flags and settle every setting.  A flag in error is reported and left at its
+	 * default.
+	 * 
+	 * @param theFlags - flag and value, by lower-case flag
+	 * @param source - where the flags came from, for error titles
+	 * @param listener - told of errors, or null to throw them
+	 */
+	private AnonymizerConfig(Map<String, String[]> theFlags, String source, AnonymizerListener listener) {
+		flags = Collections.unmodifiableMap(theFlags);
+		Parser parser = new Parser(flags, source, listener);
+		anonymize = parser.bool("anonymize", true);
+		columnsToAnonymize = parser.list("columnsToAnonymize", new String[] {"Quest14a", "Quest14b", "Quest14c", "Quest14d", "Quest14e"});
+		columnsIndicatingRespondent = parser.list("columnsIndicatingRespondent", new String[] {"respondent", "opername"});
+		dataDelimiter = parser.text("dataDelimiter", "\t");
+		entryDelimiter = parser.text("intraColumnDelimiter", ":");
+		implicitRole = parser.text("implicitRole", "Grower");
+		columnHasRole = parser.bool("columnHasRole", true);
+		cleaningThresholds = parser.thresholds("cleaningThresholds", new int[] {3,8,12});
+		cleaningIndex = parser.choice("cleaningIndex", "bktree", "bktree", "symspell");
+		cleaningMode = parser.choice("cleaningMode", "greedy", "greedy", "cluster").toLowerCase();
+		cleaningSuggestions = parser.integer("cleaningSuggestions", 0, 0, "");
+		cleaningBlocking = parser.blocking("cleaningBlocking");
+		blockingRecallSample = parser.share("blockingRecallSample", 0);
+		cleaningThreads = parser.integer("cleaningThreads", 1, 0, "  Use 0 for every core.");
+		writingThreads = parser.integer("writingThreads", 1, 0, "  Use 0 for every core.");
+		streaming = parser.bool("streaming", false);
+		logLevel = parser.level("logLevel");
+		pseudonymRegistry = parser.text("pseudonymRegistry", "");
+		pseudonymKey = parser.text("pseudonymKey", "");
+		checkpoint = parser.text("checkpoint", "");
+		checkpointInterval = parser.integer("checkpointInterval", 10000, 1, "");
+		cleaningHistory = parser.text("cleaningHistory", "");
+		rebuildCleaningHistory = parser.bool("rebuildCleaningHistory", false);
+		parser.reportUnknown();
+	}
+
+	/**
+	 * @return the configuration with every flag at its default
+	 */
+	public static AnonymizerConfig defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Read a configuration file.  Errors in it are reported to the listener, and the flags in
+	 * error left at their defaults.
+	 * 
+	 * @param configFile - the configuration file
+	 * @param listener - told of any errors
+	 * @return the configuration
+	 * @throws IOException - if the file can't be read
+	 */
+	public static AnonymizerConfig read(File configFile, AnonymizerListener listener) throws IOException {
+		LinkedHashMap<String, String[]> flags = new LinkedHashMap<String, String[]>();
+		BufferedReader reader = new BufferedReader(new FileReader(configFile));
+		try {
+			while(reader.ready()) {
+				String dataLine = reader.readLine();
+				String flag = dataLine.substring(0, dataLine.indexOf(":"));
+				String value = dataLine.substring(dataLine.indexOf(":")+1, dataLine.length());
+				flag = flag.trim();
+				value = value.trim();
+				flags.put(flag.toLowerCase(), new String[] {flag, value});
+			}
+		} finally {
+			reader.close();
+		}
+		return new AnonymizerConfig(flags, configFile.getName(), listener);
+	}
+
+	/**
+	 * @param flag - any flag of the configuration file
+	 * @param value - its new value
+	 * @return a copy of this configuration with the flag changed
+	 * @throws IllegalArgumentException - if the flag isn't recognized, or the value is not one it takes
+	 */
+	public AnonymizerConfig with(String flag, String value) {
+		LinkedHashMap<String, String[]> changed = new LinkedHashMap<String, String[]>(flags);
+		changed.put(flag.toLowerCase(), new String[] {flag, value.trim()});
+		return new AnonymizerConfig(changed, "", null);
+	}
+
+	/**
+	 * @return the level SurveyLog should log at, or null if the configuration doesn't say
+	 */
+	public SurveyLog.Level getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * @return true if names are to be anonymized, not only cleaned
+	 */
+	public boolean isAnonymizing() {
+		return anonymize;
+	}
+
+	/**
+	 * @return true if the configuration names a checkpoint file, so a run can be resumed
+	 */
+	public boolean hasCheckpoint() {
+		return !checkpoint.isEmpty();
+	}
+
+	/**
+	 * @return the number of threads cleaning should use, with 0 resolved to the number of cores
+	 */
+	int getCleaningThreads() {
+		if(cleaningThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return cleaningThreads;
+	}
+
+	/**
+	 * @return the number of threads writing should use, with 0 resolved to the number of cores
+	 */
+	int getWritingThreads() {
+		if(writingThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return writingThreads;
+	}
+
+	/**
+	 * @param info - a name or role
+	 * @return how far another name or role may be from it and still be taken for the same,
+	 * following cleaningThresholds
+	 */
+	int getDistanceThreshold(String info) {
+		int infoLength = info.length();
+		int closestThreshold;
+		if(cleaningThresholds == null) {
+			closestThreshold = 0;
+		}
+		else {
+			closestThreshold = cleaningThresholds.length;
+			for(int i = 0; i < cleaningThresholds.length; ++i) {
+				if(cleaningThresholds[i] >= infoLength) {
+					closestThreshold = i;
+					break;
+				}
+			}
+		}
+
+		return closestThreshold;
+	}
+
+	/**
+	 * Reads each flag's value, reporting those in error
+	 */
+	private static class Parser {
+
+		private final Map<String, String[]> flags;
+		private final String source;
+		private final AnonymizerListener listener;
+		private final ArrayList<String> known = new ArrayList<String>();
+
+		Parser(Map<String, String[]> theFlags, String theSource, AnonymizerListener theListener) {
+			flags = theFlags;
+			source = theSource;
+			listener = theListener;
+		}
+
+		/**
+		 * @return the value given for the flag, or null if it isn't given
+		 */
+		private String get(String flag) {
+			known.add(flag.toLowerCase());
+			String[] given = flags.get(flag.toLowerCase());
+			return given == null ? null : given[1];
+		}
+
+		private void error(String message) {
+			if(listener == null) {
+				throw new IllegalArgumentException(message);
+			}
+			listener.configurationError("Configuration File Error: " + source, message);
+		}
+
+		String text(String flag, String defaultValue) {
+			String value = get(flag);
+			return value == null ? defaultValue : value;
+		}
+
+		String[] list(String flag, String[] defaultValue) {
+			String value = get(flag);
+			return value == null ? defaultValue : value.split(",");
+		}
+
+		boolean bool(String flag, boolean defaultValue) {
+			String value = get(flag);
+			return value == null ? defaultValue : Boolean.parseBoolean(value);
+		}
+
+		String choice(String flag, String defaultValue, String first, String second) {
+			String value = get(flag);
+			if(value == null) {
+				return defaultValue;
+			}
+			if(value.equalsIgnoreCase(first) || value.equalsIgnoreCase(second)) {
+				return value;
+			}
+			error("Value for configuration flag " + flag + " should be " + first + " or " + second + ", but " + value + " was found.");
+			return defaultValue;
+		}
+
+		int integer(String flag, int defaultValue, int minimum, String hint) {
+			String value = get(flag);
+			if(value == null) {
+				return defaultValue;
+			}
+			try {
+				int number = Integer.parseInt(value);
+				if(number >= minimum) {
+					return number;
+				}
+			} catch (NumberFormatException e) {
+				// Reported below
+			}
+			error((minimum > 0 ? "Positive" : "Non-negative") + " integer value for configuration flag " + flag
+					+ " expected, but not found. " + value + " was found." + hint);
+			return defaultValue;
+		}
+
+		double share(String flag, double defaultValue) {
+			String value = get(flag);
+			if(value == null) {
+				return defaultValue;
+			}
+			try {
+				double share = Double.parseDouble(value);
+				if(share >= 0 && share <= 1) {
+					return share;
+				}
+			} catch (NumberFormatException e) {
+				// Reported below
+			}
+			error("Value between 0 and 1 for configuration flag " + flag + " expected, but not found. " + value + " was found.");
+			return defaultValue;
+		}
+
+		int[] thresholds(String flag, int[] defaultValue) {
+			String value = get(flag);
+			if(value == null) {
+				return defaultValue;
+			}
+			if(value.equals("")) {
+				return null;
+			}
+			try {
+				String[] values = value.split(",");
+				int[] intValues = new int[values.length];
+				for(int i = 0; i < values.length; ++i) {
+					intValues[i] = Integer.parseInt(values[i]);
+				}
+				return intValues;
+			} catch (NumberFormatException e) {
+				error("Integer values for configuration flag " + flag + " expected, but not found. " + value + " was found.  Please replace with only integers.");
+				return defaultValue;
+			}
+		}
+
+		String blocking(String flag) {
+			String value = get(flag);
+			if(value == null || value.equals("") || value.equalsIgnoreCase("off")) {
+				return "";
+			}
+			if(BlockingIndex.isValidKeys(value)) {
+				return value;
+			}
+			error("Value for configuration flag " + flag + " should be off, or any of soundex, metaphone and prefix separated by commas, but " + value + " was found.");
+			return "";
+		}
+
+		SurveyLog.Level level(String flag) {
+			String value = get(flag);
+			if(value == null) {
+				return null;
+			}
+			SurveyLog.Level level = SurveyLog.parseLevel(value);
+			if(level == null) {
+				error("Value for configuration flag " + flag + " should be ERROR, WARN, INFO, DEBUG or TRACE, but " + value + " was found.");
+			}
+			return level;
+		}
+
+		/**
+		 * Report every flag given that no setting asked for
+		 */
+		void reportUnknown() {
+			HashMap<String, String[]> unknown = new HashMap<String, String[]>(flags);
+			for(String flag : known) {
+				unknown.remove(flag);
+			}
+			for(String[] given : unknown.values()) {
+				error("Configuration flag " + given[0] + " is not recognized.  Please check.");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,440 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.BoxLayout;
+import javax.swing.DefaultCellEditor;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
+import javax.swing.text.BadLocationException;
+
+import morgan.SurveyInference.Linker.TXTFileFilter;
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * The Anonymizer window: picks the data file, shows the progress and log of the Anonymizer as
+ * it runs, and lets the user review the cleaned names and roles afterwards.  There is one
+ * window to a JVM; it runs its own Anonymizer.
+ * 
+ * The run itself happens on a background worker.  Its progress and log lines are only
+ * recorded as they come in; a timer on the event dispatch thread puts them on screen a few
+ * times a second, appending the waiting log lines in one go.  The log keeps only the latest
+ * MAX_LOG_LINES lines, so a long run can't slow the window down.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class AnonymizerFrame implements ActionListener, AnonymizerListener {
+
+	static AnonymizerFrame theFrame = new AnonymizerFrame();
+
+	/**
+	 * The settings the run uses, read from the configuration file
+	 */
+	static AnonymizerConfig config = AnonymizerConfig.defaults();
+
+	/**
+	 * Checkboxes for review panels
+	 */
+	static JCheckBox showAllNames = new JCheckBox("Show only changed names");
+	static JCheckBox showAllRoles = new JCheckBox("Show only changed roles");
+	
+	/**
+	 * The rows of the review tabs
+	 */
+	static ReviewTableModel nameReview, roleReview;
+
+	/** 
+	 * A ProgressBar that shows progress to the user
+	 */
+	static JProgressBar progress = new JProgressBar(0, 1);
+
+	/**
+	 * Gives reports to the user on what is going on.  Displays warnings
+	 * and a control log to the user.
+	 */
+	static JTextArea textField = new JTextArea(10, 20);
+
+	/**
+	 * Stops the run
+	 */
+	static JButton cancelButton = new JButton("Cancel");
+
+	/**
+	 * How often, in milliseconds, progress and the log are brought up to date
+	 */
+	static final int REFRESH_INTERVAL = 100;
+
+	/**
+	 * The most lines the log keeps, on screen and waiting to be shown
+	 */
+	static final int MAX_LOG_LINES = 5000;
+
+	/**
+	 * Log lines waiting to be shown
+	 */
+	static LogBuffer pendingLog = new LogBuffer(MAX_LOG_LINES);
+
+	/**
+	 * The latest progress reported by the run, waiting to be shown
+	 */
+	static volatile String stage = null;
+	static volatile int progressMaximum = 1;
+	static volatile int progressValue = 0;
+
+	/**
+	 * Set when the user cancels the run
+	 */
+	static volatile boolean cancelled = false;
+
+	/**
+	 * Brings progress and the log up to date
+	 */
+	static Timer refreshTimer;
+
+	/**
+	 * This is the main execution thread of the window.  It does the following:
+	 * 	1) Identify a tab-delimited data file to process
+	 *  2) Instantiate the ProgressBar
+	 *  3) Run the Anonymizer over the DataFile, on a background worker
+	 *  4) Add the review tabs
+	 *  
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		try {
+			if(args.length > 0) {
+				config = AnonymizerMain.readConfigurationFile(new File(args[0]), theFrame);
+			}
+			else {
+				config = AnonymizerMain.readConfigurationFile(new File("anonymizerConfig.txt"), theFrame);
+			}
+		} catch (Exception e) {
+			System.out.println("Error reading configuration file, using defaults!");
+		}
+		String dialogTitle = "Select data file for Anonymization";
+		if(!config.isAnonymizing()) {
+			dialogTitle = "Select data file for reconciliation";
+			JOptionPane.showMessageDialog(null, "Based on current configuration,\nentries will NOT be anonymized.", "Not Anonymizing Entries", JOptionPane.WARNING_MESSAGE);
+		}
+
+		JFileChooser dataFileChooser = new JFileChooser(".");
+		dataFileChooser.setDialogTitle(dialogTitle);
+		dataFileChooser.setFileFilter(new TXTFileFilter());
+		int returnVal = dataFileChooser.showOpenDialog(null);
+		if(returnVal == JFileChooser.APPROVE_OPTION) {
+			File dataFile = dataFileChooser.getSelectedFile();
+			final File theDataFile = dataFile;
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					start(theDataFile);
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * Open the progress window and start the run on a background worker
+	 * 
+	 * @param dataFile - the data file to process
+	 */
+	static void start(final File dataFile) {
+		final Anonymizer engine = new Anonymizer(config, theFrame);
+		final JFrame progressFrame = new JFrame();
+		final JTabbedPane tabbedPane = new JTabbedPane();
+		JPanel content = new JPanel();
+		tabbedPane.addTab("Main Log", content);
+		content.setLayout(new BoxLayout(content, BoxLayout.PAGE_AXIS));
+		progressFrame.setContentPane(tabbedPane);
+		progressFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+		progressFrame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				close(progressFrame, engine);
+			}
+		});
+		progressFrame.setTitle("Anonymizer!");
+		progressFrame.setPreferredSize(new Dimension(600,400));
+		JPanel progressPanel = new JPanel(new BorderLayout());
+		progressPanel.add(progress, BorderLayout.CENTER);
+		progressPanel.add(cancelButton, BorderLayout.EAST);
+		content.add(progressPanel);
+		cancelButton.addActionListener(theFrame);
+		JScrollPane scrollPanel = new JScrollPane(textField);
+		scrollPanel.setPreferredSize(new Dimension(600, 350));
+		content.add(scrollPanel);
+		textField.setText("Anonymizer Run Log:");
+		progressFrame.pack();
+		progressFrame.setVisible(true);
+
+		refreshTimer = new Timer(REFRESH_INTERVAL, theFrame);
+		refreshTimer.start();
+
+		SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+			@Override
+			protected Void doInBackground() throws Exception {
+				AnonymizerMain.run(engine, dataFile, engine.getOutputFile(dataFile), false);
+				return null;
+			}
+
+			@Override
+			protected void done() {
+				refreshTimer.stop();
+				cancelButton.setEnabled(false);
+				try {
+					get();
+					refresh();
+
+					// Add review tabs
+					nameReview = new ReviewTableModel(engine, engine.getCandidateNames(), false);
+					roleReview = new ReviewTableModel(engine, engine.getCandidateRoles(), true);
+					tabbedPane.addTab("Review Names", prepareReviewPanel(nameReview, showAllNames));
+					tabbedPane.addTab("Review Roles", prepareReviewPanel(roleReview, showAllRoles));
+
+					progress.setString("Process Complete!");
+					appendLog("\nDone!\n\nClose the Window when ready.");
+				} catch (ExecutionException e) {
+					refresh();
+					if(e.getCause() instanceof CancellationException) {
+						progress.setString("Cancelled");
+						appendLog("\nCancelled, no output was written.\n\nClose the Window when ready.");
+					}
+					else {
+						e.getCause().printStackTrace();
+						progress.setString("Failed");
+						appendLog("\nError: " + e.getCause() + "\n\nClose the Window when ready.");
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		worker.execute();
+	}
+
+	/**
+	 * Save the reviews in the cleaning history and exit.  If they can't be saved, the user may
+	 * keep the window open and try again.
+	 * 
+	 * @param progressFrame - the window being closed
+	 * @param engine - the Anonymizer whose candidates were reviewed
+	 */
+	static void close(JFrame progressFrame, Anonymizer engine) {
+		try {
+			if(engine.saveReviews()) {
+				SurveyLog.info("Reviews saved in the cleaning history");
+			}
+		} catch (IOException e) {
+			SurveyLog.warn("Could not save the cleaning history: " + e);
+			int choice = JOptionPane.showConfirmDialog(progressFrame, "The cleaning history could not be saved: " + e.getMessage()
+					+ "\nClose anyway, losing the reviews?", "Cleaning History Error", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+			if(choice != JOptionPane.YES_OPTION) {
+				return;
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Put the latest progress and waiting log lines on screen.  Called on the event dispatch
+	 * thread.
+	 */
+	static void refresh() {
+		if(progress.getMaximum() != progressMaximum) {
+			progress.setMaximum(progressMaximum);
+			progress.setStringPainted(true);
+		}
+		progress.setValue(progressValue);
+		if(stage != null && !stage.equals(progress.getString())) {
+			progress.setString(stage);
+		}
+		StringBuilder lines = new StringBuilder();
+		pendingLog.drainTo(lines);
+		if(lines.length() > 0) {
+			appendLog(lines.toString());
+		}
+	}
+
+	/**
+	 * Append to the log, dropping its oldest lines beyond MAX_LOG_LINES
+	 */
+	static void appendLog(String text) {
+		textField.append(text);
+		int excess = textField.getLineCount() - MAX_LOG_LINES;
+		if(excess > 0) {
+			try {
+				textField.replaceRange("", 0, textField.getLineEndOffset(excess - 1));
+			} catch (BadLocationException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * A review tab: a table of the candidates' original and cleaned text and any suggestions,
+	 * which sorts on a click of its header, with the checkbox and a filter field above it.  The
+	 * table only draws the rows on screen, so the tab opens at once at any roster size.  Editing
+	 * a cleaned text offers the candidate's suggestions in a drop-down list.
+	 * 
+	 * @param model - the candidates to review
+	 * @param checkBox - shows only the candidates cleaning changed
+	 * @return the tab
+	 */
+	static JPanel prepareReviewPanel(final ReviewTableModel model, JCheckBox checkBox) {
+		JPanel holderPanel = new JPanel();
+		holderPanel.setLayout(new BorderLayout());
+
+		final JTable table = new JTable(model);
+		table.setFillsViewportHeight(true);
+		TableRowSorter<ReviewTableModel> sorter = new TableRowSorter<ReviewTableModel>(model);
+		// Plain string order; a collator is far slower on large rosters
+		Comparator<String> order = new Comparator<String>() {
+			public int compare(String a, String b) {
+				return a.compareTo(b);
+			}
+		};
+		sorter.setComparator(0, order);
+		sorter.setComparator(1, order);
+		sorter.setComparator(2, order);
+		table.setRowSorter(sorter);
+		// The choices are the edited candidate's own
+		final JComboBox<String> choices = new JComboBox<String>();
+		table.getColumnModel().getColumn(1).setCellEditor(new DefaultCellEditor(choices) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Component getTableCellEditorComponent(JTable theTable, Object value, boolean isSelected, int row, int column) {
+				choices.setModel(new DefaultComboBoxModel<String>(model.getChoices(theTable.convertRowIndexToModel(row))));
+				return super.getTableCellEditorComponent(theTable, value, isSelected, row, column);
+			}
+		});
+		JScrollPane scrollPanel = new JScrollPane(table);
+		scrollPanel.setPreferredSize(new Dimension(400, 350));
+		holderPanel.add(scrollPanel, BorderLayout.CENTER);
+
+		checkBox.setSelected(false);
+		checkBox.addActionListener(theFrame);
+		final JTextField filterField = new JTextField(20);
+		filterField.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+
+			public void removeUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+
+			public void changedUpdate(DocumentEvent e) {
+				model.setFilter(filterField.getText());
+			}
+		});
+		JPanel controls = new JPanel(new BorderLayout());
+		controls.add(checkBox, BorderLayout.WEST);
+		JPanel filterPanel = new JPanel(new BorderLayout());
+		filterPanel.add(new JLabel(" Filter: "), BorderLayout.WEST);
+		filterPanel.add(filterField, BorderLayout.CENTER);
+		controls.add(filterPanel, BorderLayout.CENTER);
+		holderPanel.add(controls, BorderLayout.NORTH);
+
+		return holderPanel;
+	}
+
+	public void setStage(String theStage) {
+		stage = theStage;
+	}
+
+	public void setProgressMaximum(int maximum) {
+		progressMaximum = maximum;
+	}
+
+	public void setProgress(int value) {
+		progressValue = value;
+	}
+
+	public void log(String message) {
+		pendingLog.add(message);
+	}
+
+	public void configurationError(String title, String message) {
+		JOptionPane.showMessageDialog(null, message, title, JOptionPane.ERROR_MESSAGE);
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void actionPerformed(ActionEvent e) {
+		if(e.getSource().equals(refreshTimer)) {
+			refresh();
+		}
+		else if(e.getSource().equals(cancelButton)) {
+			cancelled = true;
+			cancelButton.setEnabled(false);
+			pendingLog.add("Cancelling...");
+		}
+		else if(e.getSource().equals(showAllNames)) {
+			nameReview.setOnlyChanged(showAllNames.isSelected());
+		}
+		else if(e.getSource().equals(showAllRoles)) {
+			roleReview.setOnlyChanged(showAllRoles.isSelected());
+		}
+	}
+
+
+
+
+}
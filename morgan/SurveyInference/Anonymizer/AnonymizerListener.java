@@ -0,0 +1,70 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+/**
+ * Receives progress and log messages from an Anonymizer as it runs, so the same steps can
+ * report to the Swing window or to a console.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public interface AnonymizerListener {
+
+	/**
+	 * A new step has started
+	 * @param stage - a short description, such as "Cleaning..."
+	 */
+	void setStage(String stage);
+
+	/**
+	 * @param maximum - how many units of progress the run has
+	 */
+	void setProgressMaximum(int maximum);
+
+	/**
+	 * @param value - how many units of progress have been made in the current step
+	 */
+	void setProgress(int value);
+
+	/**
+	 * Add a line to the run log
+	 * @param message - the line to add
+	 */
+	void log(String message);
+
+	/**
+	 * A problem was found in the configuration file; the run continues with the default
+	 * @param title - where the problem was found
+	 * @param message - what the problem is
+	 */
+	void configurationError(String title, String message);
+
+	/**
+	 * Polled throughout a run; once it returns true, the run stops as soon as it can
+	 * @return true if the run should stop
+	 */
+	boolean isCancelled();
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.List;
+
+/**
+ * An index over the names approved so far by cleanCandidateIDs.  Implementations must return
+ * exactly what a linear scan over the approved names would: the closest name within both
+ * thresholds, and of equally close names the one approved first.
+ *
+ * Once names have been added, findClosest must be safe to call from several threads at once;
+ * searches count their distance evaluations in the target's statistics, not in the index.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public interface ApprovedNameIndex {
+
+	/**
+	 * Add a newly approved name
+	 * @param name - the approved name
+	 */
+	void add(String name);
+
+	/**
+	 * Find the closest approved name to the target
+	 * @param target - the prepared string to be checked against the approved names
+	 * @param maxDistance - the threshold of the target
+	 * @return the closest approved name, or null if no suitable name is found
+	 */
+	String findClosest(NamePattern target, int maxDistance);
+
+	/**
+	 * Find every approved name close enough to the target, as findClosest would accept it
+	 * @param target - the prepared string to be checked against the approved names
+	 * @param maxDistance - the threshold of the target
+	 * @param found - receives the approval number (0 for the first approved) of each name found
+	 */
+	void findAll(NamePattern target, int maxDistance, List<Integer> found);
+
+	/**
+	 * @return how many names have been approved
+	 */
+	int size();
+
+	/**
+	 * @return how many distance evaluations adding names to this index has performed
+	 */
+	long getInsertEvaluations();
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A BK-tree (Burkhard-Keller metric tree) over approved names.
+ *
+ * Every child of a node is filed under its Levenshtein distance to that node.  Because the
+ * Levenshtein distance is a metric, a search with radius r around a target at distance d
+ * from a node only has to descend into children filed under d-r to d+r; every other branch
+ * is pruned without computing a single distance.
+ * 
+ * The tree is organised by the textbook distance, LevenshteinDistance(s0, s1, false), since
+ * the distance used for cleaning lets the first character of the approved name be skipped
+ * for free and so is not a metric.  That cleaning distance is never more than one below the
+ * textbook distance, so we search one step wider and then compute the cleaning distance for
+ * the names that survive.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class BKTree implements ApprovedNameIndex {
+
+	/**
+	 * A single approved name in the tree
+	 */
+	static class Node {
+		/**
+		 * The approved name
+		 */
+		String name;
+		/**
+		 * The order in which the name was approved, used to break ties the same way
+		 * a linear scan over the approved names would
+		 */
+		int order;
+		/**
+		 * The distance threshold of the approved name itself, used for the symmetry check
+		 */
+		int threshold;
+		/**
+		 * Children, each filed under its distance to this node
+		 */
+		int[] childKeys = new int[2];
+		Node[] children = new Node[2];
+		int childCount = 0;
+		/**
+		 * The largest distance any child is filed under, so searches know how far they need to look
+		 */
+		int maxChildKey = 0;
+
+		Node(String theName, int theOrder, int theThreshold) {
+			name = theName;
+			order = theOrder;
+			threshold = theThreshold;
+		}
+
+		Node getChild(int key) {
+			for(int i = 0; i < childCount; ++i) {
+				if(childKeys[i] == key) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		void addChild(int key, Node child) {
+			if(childCount == children.length) {
+				int[] newKeys = new int[childCount * 2];
+				Node[] newChildren = new Node[childCount * 2];
+				System.arraycopy(childKeys, 0, newKeys, 0, childCount);
+				System.arraycopy(children, 0, newChildren, 0, childCount);
+				childKeys = newKeys;
+				children = newChildren;
+			}
+			childKeys[childCount] = key;
+			children[childCount] = child;
+			++childCount;
+			if(key > maxChildKey) {
+				maxChildKey = key;
+			}
+		}
+	}
+
+	/**
+	 * The settings whose cleaning thresholds the names are kept with
+	 */
+	private final AnonymizerConfig config;
+
+	/**
+	 * The first approved name
+	 */
+	Node root = null;
+
+	/**
+	 * How many names are in the tree
+	 */
+	int size = 0;
+
+	/**
+	 * How many distance evaluations insertions into this tree have performed
+	 */
+	long insertEvaluations = 0;
+
+	/**
+	 * @param theConfig - the settings whose cleaning thresholds apply to the names
+	 */
+	BKTree(AnonymizerConfig theConfig) {
+		config = theConfig;
+	}
+
+	/**
+	 * Add an approved name to the tree.
+	 *
+	 * @param name - the approved name
+	 */
+	public void add(String name) {
+		add(name, size);
+	}
+
+	/**
+	 * Add an approved name whose approval order is kept by someone else.
+	 * 
+	 * @param name - the approved name
+	 * @param order - the order in which it was approved
+	 */
+	void add(String name, int order) {
+		Node newNode = new Node(name, order, config.getDistanceThreshold(name));
+		++size;
+		if(root == null) {
+			root = newNode;
+			return;
+		}
+		NamePattern pattern = new NamePattern(name);
+		Node current = root;
+		while(true) {
+			int exact = Math.max(name.length(), current.name.length());
+			int distance = pattern.distance(current.name, exact, false);
+			++insertEvaluations;
+			Node child = current.getChild(distance);
+			if(child == null) {
+				current.addChild(distance, newNode);
+				return;
+			}
+			current = child;
+		}
+	}
+
+	/**
+	 * Find the closest approved name to the target.  A name is only acceptable if each of the
+	 * two names is within the other's threshold (Jan should replace Jane only if Jane and Jan
+	 * would both match).  If several names are equally close, the earliest approved wins, just
+	 * as it would with a linear scan over the approved names.
+	 *
+	 * @param target - the prepared string to be checked against the approved names
+	 * @param maxDistance - the threshold of the target
+	 * @return the closest approved name, or null if no suitable name is found
+	 */
+	public String findClosest(NamePattern target, int maxDistance) {
+		Node best = findClosestNode(target, maxDistance, null);
+		return best == null ? null : best.name;
+	}
+
+	/**
+	 * As findClosest, but returns the node itself so callers can compare approval order.
+	 * 
+	 * @param target - the prepared string to be checked against the approved names
+	 * @param maxDistance - the threshold of the target
+	 * @param bestDistanceOut - if not null, the distance to the best node is stored here
+	 * @return the closest approved node, or null if no suitable name is found
+	 */
+	Node findClosestNode(NamePattern target, int maxDistance, int[] bestDistanceOut) {
+		if(root == null) {
+			return null;
+		}
+		Node best = null;
+		int bestDistance = maxDistance;
+
+		ArrayList<Node> toVisit = new ArrayList<Node>();
+		toVisit.add(root);
+		while(!toVisit.isEmpty()) {
+			Node current = toVisit.remove(toVisit.size() - 1);
+			// Beyond this bound the node can neither match nor have children worth visiting
+			int reach = bestDistance + 1 + current.maxChildKey;
+			int metricDistance = target.distance(current.name, reach, false);
+			if(metricDistance > reach) {
+				continue;
+			}
+
+			// The cleaning distance is at most one less than the metric distance
+			int acceptable = Math.min(bestDistance, current.threshold);
+			if(metricDistance - 1 <= acceptable) {
+				int distance = target.distance(current.name, acceptable, true);
+				if(distance <= bestDistance && distance <= current.threshold) {
+					if(best == null || distance < bestDistance || current.order < best.order) {
+						best = current;
+						bestDistance = distance;
+					}
+				}
+			}
+
+			// Triangle inequality: only children filed within reach of our distance can match
+			int radius = bestDistance + 1;
+			for(int i = 0; i < current.childCount; ++i) {
+				int key = current.childKeys[i];
+				if(key >= metricDistance - radius && key <= metricDistance + radius) {
+					toVisit.add(current.children[i]);
+				}
+			}
+		}
+
+		if(best != null && bestDistanceOut != null) {
+			bestDistanceOut[0] = bestDistance;
+		}
+		return best;
+	}
+
+	/**
+	 * A name found by findNearest, and its cleaning distance from the target
+	 */
+	static class Neighbour {
+		final Node node;
+		final int distance;
+
+		Neighbour(Node theNode, int theDistance) {
+			node = theNode;
+			distance = theDistance;
+		}
+	}
+
+	/**
+	 * Farthest first, and of those equally far the latest approved, so the head of a bounded
+	 * queue is always the neighbour to drop next
+	 */
+	private static final Comparator<Neighbour> WORST_FIRST = new Comparator<Neighbour>() {
+		public int compare(Neighbour a, Neighbour b) {
+			if(a.distance != b.distance) {
+				return a.distance > b.distance ? -1 : 1;
+			}
+			return a.node.order > b.node.order ? -1 : (a.node.order == b.node.order ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Find the k approved names closest to the target, nearest first, ties going to the earliest
+	 * approved.  Unlike findClosest the approved names' own thresholds are not checked, as this
+	 * is for offering alternatives rather than for cleaning.
+	 * 
+	 * The names found so far are kept in a queue bounded at k, so once it is full the search
+	 * only looks as far as the worst of them.
+	 *
+	 * @param target - the prepared string to be checked against the approved names
+	 * @param maxDistance - how far from the target to look
+	 * @param k - how many names to find at most
+	 * @param exclude - a name to leave out, or null
+	 * @return the names found, nearest first
+	 */
+	List<Neighbour> findNearest(NamePattern target, int maxDistance, int k, String exclude) {
+		ArrayList<Neighbour> nearest = new ArrayList<Neighbour>();
+		if(root == null || k <= 0) {
+			return nearest;
+		}
+		PriorityQueue<Neighbour> queue = new PriorityQueue<Neighbour>(k + 1, WORST_FIRST);
+		int bound = maxDistance;
+
+		ArrayList<Node> toVisit = new ArrayList<Node>();
+		toVisit.add(root);
+		while(!toVisit.isEmpty()) {
+			Node current = toVisit.remove(toVisit.size() - 1);
+			int reach = bound + 1 + current.maxChildKey;
+			int metricDistance = target.distance(current.name, reach, false);
+			if(metricDistance > reach) {
+				continue;
+			}
+
+			if(metricDistance - 1 <= bound && !current.name.equals(exclude)) {
+				int distance = target.distance(current.name, bound, true);
+				if(distance <= bound) {
+					Neighbour found = new Neighbour(current, distance);
+					if(queue.size() < k) {
+						queue.add(found);
+					}
+					else if(WORST_FIRST.compare(found, queue.peek()) > 0) {
+						queue.poll();
+						queue.add(found);
+					}
+					if(queue.size() == k) {
+						bound = queue.peek().distance;
+					}
+				}
+			}
+
+			int radius = bound + 1;
+			for(int i = 0; i < current.childCount; ++i) {
+				int key = current.childKeys[i];
+				if(key >= metricDistance - radius && key <= metricDistance + radius) {
+					toVisit.add(current.children[i]);
+				}
+			}
+		}
+
+		while(!queue.isEmpty()) {
+			nearest.add(queue.poll());
+		}
+		// The queue gives up the worst first
+		Collections.reverse(nearest);
+		return nearest;
+	}
+
+	public void findAll(NamePattern target, int maxDistance, List<Integer> found) {
+		if(root == null) {
+			return;
+		}
+		ArrayList<Node> toVisit = new ArrayList<Node>();
+		toVisit.add(root);
+		int radius = maxDistance + 1;
+		while(!toVisit.isEmpty()) {
+			Node current = toVisit.remove(toVisit.size() - 1);
+			int reach = radius + current.maxChildKey;
+			int metricDistance = target.distance(current.name, reach, false);
+			if(metricDistance > reach) {
+				continue;
+			}
+
+			int acceptable = Math.min(maxDistance, current.threshold);
+			if(metricDistance - 1 <= acceptable && target.distance(current.name, acceptable, true) <= acceptable) {
+				found.add(current.order);
+			}
+
+			for(int i = 0; i < current.childCount; ++i) {
+				int key = current.childKeys[i];
+				if(key >= metricDistance - radius && key <= metricDistance + radius) {
+					toVisit.add(current.children[i]);
+				}
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getInsertEvaluations() {
+		return insertEvaluations;
+	}
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * An index over approved names that only compares a candidate with the names in the same
+ * blocks: names with the same Soundex code, the same Double Metaphone code (primary or
+ * alternate), or the same first letter and a length within reach, either for the whole name
+ * or for all but its first letter.  Names that sound nothing alike are never compared.
+ *
+ * Unlike BKTree and DeletionIndex this is not exact: a name that is close enough to merge but
+ * shares no block with the candidate (typos in both of the first two letters, say) is missed.  Within the
+ * blocks, the result is that of a linear scan, the closest name with the earliest approved
+ * winning ties.  To see what blocking loses, a share of the searches (recallSample) are
+ * also done as a full linear scan, and the merges blocking missed are counted.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class BlockingIndex implements ApprovedNameIndex {
+
+	/**
+	 * Length buckets for first-letter blocks are this many characters wide
+	 */
+	static final int LENGTH_BUCKET = 4;
+
+	/**
+	 * How many candidates were also searched with a full scan, and how many merges blocking
+	 * found or lost among them
+	 */
+	static SurveyLog.Counter recallChecks = SurveyLog.counter("Blocking recall checks");
+	static SurveyLog.Counter recallMerges = SurveyLog.counter("Merges found by a full scan in recall checks");
+	static SurveyLog.Counter recallLost = SurveyLog.counter("Merges lost to blocking in recall checks");
+
+	private final boolean soundex;
+	private final boolean metaphone;
+	private final boolean prefix;
+	private final double recallSample;
+	private final AnonymizerConfig config;
+
+	/**
+	 * The approved names, and their thresholds, in the order they were approved
+	 */
+	private ArrayList<String> names = new ArrayList<String>();
+	private int[] thresholds = new int[16];
+
+	/**
+	 * The numbers of the names in each block, in the order they were approved
+	 */
+	private HashMap<String, int[]> blocks = new HashMap<String, int[]>();
+	private int postings = 0;
+
+	/**
+	 * Approved names the searches skipped, compared with a linear scan
+	 */
+	private AtomicLong pruned = new AtomicLong();
+
+	/**
+	 * Scratch space for a single search, one per thread
+	 */
+	private static final ThreadLocal<DeletionIndex.Scratch> scratch = new ThreadLocal<DeletionIndex.Scratch>() {
+		@Override
+		protected DeletionIndex.Scratch initialValue() {
+			return new DeletionIndex.Scratch();
+		}
+	};
+
+	/**
+	 * @param theConfig - the settings of the run: cleaningBlocking names the blocks to use, any
+	 * of "soundex", "metaphone" and "prefix", and blockingRecallSample the share of searches to
+	 * check against a full scan, 0 for none
+	 */
+	BlockingIndex(AnonymizerConfig theConfig) {
+		String lower = theConfig.cleaningBlocking.toLowerCase();
+		soundex = lower.contains("soundex");
+		metaphone = lower.contains("metaphone");
+		prefix = lower.contains("prefix");
+		recallSample = theConfig.blockingRecallSample;
+		config = theConfig;
+	}
+
+	/**
+	 * @param keys - a cleaningBlocking value
+	 * @return true if it names at least one kind of block, and nothing else
+	 */
+	static boolean isValidKeys(String keys) {
+		boolean any = false;
+		for(String key : keys.split(",")) {
+			key = key.trim();
+			if(key.equalsIgnoreCase("soundex") || key.equalsIgnoreCase("metaphone") || key.equalsIgnoreCase("prefix")) {
+				any = true;
+			}
+			else if(!key.equals("")) {
+				return false;
+			}
+		}
+		return any;
+	}
+
+	public void add(String name) {
+		int id = names.size();
+		names.add(name);
+		if(id == thresholds.length) {
+			thresholds = Arrays.copyOf(thresholds, id * 2);
+		}
+		thresholds[id] = config.getDistanceThreshold(name);
+
+		for(String key : blockKeys(name, -1)) {
+			addToBlock(key, id);
+		}
+	}
+
+	public String findClosest(NamePattern target, int maxDistance) {
+		if(names.isEmpty()) {
+			return null;
+		}
+		DeletionIndex.Scratch s = scratch.get();
+		s.startSearch(names.size());
+		int[] best = {-1, maxDistance};
+		int examined = 0;
+
+		String name = target.name;
+		for(String key : blockKeys(name, maxDistance)) {
+			examined += searchBlock(key, target, best, s);
+		}
+		pruned.addAndGet(names.size() - examined);
+
+		String found = best[0] == -1 ? null : names.get(best[0]);
+		if(recallSample > 0 && isSampled(name)) {
+			checkRecall(name, maxDistance, found);
+		}
+		return found;
+	}
+
+	public void findAll(NamePattern target, int maxDistance, List<Integer> found) {
+		if(names.isEmpty()) {
+			return;
+		}
+		DeletionIndex.Scratch s = scratch.get();
+		s.startSearch(names.size());
+		int examined = 0;
+		for(String key : blockKeys(target.name, maxDistance)) {
+			int[] block = blocks.get(key);
+			if(block == null) {
+				continue;
+			}
+			for(int i = 1; i <= block[0]; ++i) {
+				int id = block[i];
+				if(!s.visit(id)) {
+					continue;
+				}
+				++examined;
+				int acceptable = Math.min(maxDistance, thresholds[id]);
+				if(target.distance(names.get(id), acceptable, true) <= acceptable) {
+					found.add(id);
+				}
+			}
+		}
+		pruned.addAndGet(names.size() - examined);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public long getInsertEvaluations() {
+		return 0;
+	}
+
+	/**
+	 * @return a summary of the blocks, and of how many comparisons they saved
+	 */
+	String getBlockStatistics() {
+		int largest = 0;
+		for(int[] block : blocks.values()) {
+			largest = Math.max(largest, block[0]);
+		}
+		double mean = blocks.isEmpty() ? 0 : (double)postings / blocks.size();
+		return names.size() + " names in " + blocks.size() + " blocks (mean size " + String.format("%.1f", mean)
+				+ ", largest " + largest + "); " + pruned.get() + " comparisons pruned";
+	}
+
+	/**
+	 * The blocks a name belongs to, or that a search for it should look in.  The cleaning
+	 * distance makes edits to the first character cheap, and every code here is keyed on it,
+	 * so a name is also blocked by its tail: a name and its tail, or two tails, sharing a code
+	 * brings first-letter typos, insertions and deletions together.
+	 * 
+	 * @param maxDistance - the distance searched, to cover nearby lengths, or -1 when adding
+	 * @return the keys, without duplicates
+	 */
+	private ArrayList<String> blockKeys(String name, int maxDistance) {
+		ArrayList<String> keys = new ArrayList<String>(8);
+		addKeys(name, maxDistance, keys);
+		if(name.length() > 1) {
+			addKeys(name.substring(1), maxDistance, keys);
+		}
+		return keys;
+	}
+
+	private void addKeys(String name, int maxDistance, ArrayList<String> keys) {
+		if(soundex) {
+			addKey("S:" + PhoneticCodes.soundex(name), keys);
+		}
+		if(metaphone) {
+			String[] codes = PhoneticCodes.doubleMetaphone(name);
+			addKey("M:" + codes[0], keys);
+			addKey("M:" + codes[1], keys);
+		}
+		if(prefix) {
+			if(maxDistance < 0) {
+				addKey(prefixKey(name, name.length() / LENGTH_BUCKET), keys);
+			}
+			else {
+				// Every edit changes the length by at most one, and blocking by the tail by one more
+				int low = Math.max(0, name.length() - maxDistance - 1) / LENGTH_BUCKET;
+				int high = (name.length() + maxDistance + 1) / LENGTH_BUCKET;
+				for(int bucket = low; bucket <= high; ++bucket) {
+					addKey(prefixKey(name, bucket), keys);
+				}
+			}
+		}
+	}
+
+	private static void addKey(String key, ArrayList<String> keys) {
+		if(!keys.contains(key)) {
+			keys.add(key);
+		}
+	}
+
+	private static String prefixKey(String name, int bucket) {
+		char first = name.length() == 0 ? ' ' : Character.toUpperCase(name.charAt(0));
+		return "P:" + first + bucket;
+	}
+
+	/**
+	 * Blocks are arrays with their size in the first element
+	 */
+	private void addToBlock(String key, int id) {
+		int[] block = blocks.get(key);
+		if(block == null) {
+			block = new int[4];
+			blocks.put(key, block);
+		}
+		else if(block[0] + 1 == block.length) {
+			block = Arrays.copyOf(block, block.length * 2);
+			blocks.put(key, block);
+		}
+		block[++block[0]] = id;
+		++postings;
+	}
+
+	/**
+	 * Compare the target with the names in a block it hasn't been compared with yet
+	 * 
+	 * @param best - the best name found so far and its distance, updated
+	 * @return how many names were compared
+	 */
+	private int searchBlock(String key, NamePattern target, int[] best, DeletionIndex.Scratch s) {
+		int[] block = blocks.get(key);
+		if(block == null) {
+			return 0;
+		}
+		int examined = 0;
+		for(int i = 1; i <= block[0]; ++i) {
+			int id = block[i];
+			if(!s.visit(id)) {
+				continue;
+			}
+			++examined;
+			int acceptable = Math.min(best[1], thresholds[id]);
+			if(best[0] != -1 && id > best[0] && acceptable == best[1]) {
+				// It could at best tie, and the earlier name wins ties
+				--acceptable;
+			}
+			if(acceptable < 0) {
+				continue;
+			}
+			int distance = target.distance(names.get(id), acceptable, true);
+			if(distance <= acceptable) {
+				if(best[0] == -1 || distance < best[1] || id < best[0]) {
+					best[0] = id;
+					best[1] = distance;
+				}
+			}
+		}
+		return examined;
+	}
+
+	/**
+	 * The same few names are sampled on every run
+	 */
+	private boolean isSampled(String name) {
+		long hash = name.hashCode() * 0x9E3779B97F4A7C15L;
+		return (hash >>> 11) * 0x1.0p-53 < recallSample;
+	}
+
+	/**
+	 * Search every approved name, as a linear scan would, and count whether blocking found the
+	 * same merge.  The distances computed here aren't counted in the cleaning statistics.
+	 */
+	private void checkRecall(String name, int maxDistance, String found) {
+		recallChecks.increment();
+		String exact = null;
+		int exactDistance = maxDistance;
+		for(int id = 0; id < names.size(); ++id) {
+			int acceptable = Math.min(exact == null ? maxDistance : exactDistance - 1, thresholds[id]);
+			if(acceptable < 0) {
+				continue;
+			}
+			int distance = CandidateIdentifier.LevenshteinDistance(name, names.get(id), acceptable, true);
+			if(distance <= acceptable) {
+				exact = names.get(id);
+				exactDistance = distance;
+			}
+		}
+		if(exact != null) {
+			recallMerges.increment();
+			if(!exact.equals(found)) {
+				recallLost.increment();
+				if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+					SurveyLog.debug("Blocking missed: " + name + " -> " + exact + " (found " + found + ")");
+				}
+			}
+		}
+	}
+
+}
@@ -5,8 +5,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
-import javax.swing.JPanel;
-import javax.swing.JTextField;
+import morgan.SurveyInference.Logging.PerformanceReport;
+import morgan.SurveyInference.Logging.SurveyLog;
 
 public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 
@@ -14,6 +14,13 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 	String cleanedID;
 	String anonID;
 
+	/**
+	 * The approved names closest to this candidate other than its cleaned identifier, nearest
+	 * first, and their distances; null unless cleaningSuggestions is set
+	 */
+	String[] suggestions;
+	int[] suggestionDistances;
+
 	CandidateIdentifier(String theName) {
 		id = theName;
 		cleanedID = null;
@@ -27,32 +34,163 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 		return thisLength.compareTo(oLength);
 	}
 	
-	static HashSet<String> cleanCandidateIDs(List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs) {
+	/**
+	 * How many candidates cleaning has replaced with an approved name
+	 */
+	static SurveyLog.Counter replacements = SurveyLog.counter("Names and roles replaced");
+
+	/**
+	 * How many candidates were cleaned as a cleaning history said, without a search
+	 */
+	static SurveyLog.Counter historyDecisions = SurveyLog.counter("Names and roles cleaned from history");
+
+	static HashSet<String> cleanCandidateIDs(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs) {
+		return cleanCandidateIDs(engine, theRawIDs, uniqueIDs, new DistanceStatistics());
+	}
+
+	/**
+	 * Clean the candidates, shortest first, replacing each with the closest name approved before
+	 * it or approving it if there is none.  With more than one cleaning thread the searches run
+	 * in parallel (see ParallelCleaner), with exactly the same result.
+	 * 
+	 * @param engine - the Anonymizer cleaning them, whose settings apply
+	 * @param theRawIDs - the candidates, sorted shortest first by this call
+	 * @param uniqueIDs - receives every cleaned identifier
+	 * @param statistics - receives what the cleaning cost
+	 * @return uniqueIDs
+	 */
+	static HashSet<String> cleanCandidateIDs(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs,
+			DistanceStatistics statistics) {
+		return cleanCandidateIDs(engine, theRawIDs, uniqueIDs, statistics, null);
+	}
+
+	/**
+	 * As above, but candidates the history knows are cleaned as they were before, and only the
+	 * others are searched for, among the names the history approved as well as those approved
+	 * in this call.  The new decisions are added to the history.
+	 * 
+	 * @param engine - the Anonymizer cleaning them, whose settings apply
+	 * @param theRawIDs - the candidates, sorted shortest first by this call
+	 * @param uniqueIDs - receives every cleaned identifier
+	 * @param statistics - receives what the cleaning cost
+	 * @param history - earlier decisions, or null to clean every candidate afresh
+	 * @return uniqueIDs
+	 */
+	static HashSet<String> cleanCandidateIDs(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs,
+			DistanceStatistics statistics, CleaningHistory history) {
+		return cleanCandidateIDs(engine, theRawIDs, uniqueIDs, statistics, history, null, null);
+	}
+
+	/**
+	 * As above, but the new decisions are also recorded in a checkpoint, every
+	 * checkpoint.getInterval() candidates.  With cleaningMode set to cluster the candidates are
+	 * handed to ClusterCleaner instead, and the history and checkpoint are not used.
+	 * 
+	 * @param engine - the Anonymizer cleaning them, whose settings apply
+	 * @param theRawIDs - the candidates, sorted shortest first by this call
+	 * @param uniqueIDs - receives every cleaned identifier
+	 * @param statistics - receives what the cleaning cost
+	 * @param history - earlier decisions, or null to clean every candidate afresh
+	 * @param checkpoint - where to record the decisions, or null
+	 * @param kind - Checkpoint.NAMES or Checkpoint.ROLES
+	 * @return uniqueIDs
+	 */
+	static HashSet<String> cleanCandidateIDs(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs,
+			DistanceStatistics statistics, CleaningHistory history, Checkpoint checkpoint, String kind) {
+		AnonymizerConfig config = engine.getConfig();
+		PerformanceReport.Phase phase = engine.beginPhase(kind == null ? "cleanCandidateIDs" : "cleanCandidateIDs:" + kind);
+		long evaluationsBefore = statistics.getDistanceEvaluations();
+		if(config.cleaningMode.equals("cluster")) {
+			ClusterCleaner.clean(engine, theRawIDs, uniqueIDs, statistics);
+			SurveyLog.info("Distance filters: " + statistics);
+			phase.set("newCandidates", theRawIDs.size()).set("distanceEvaluations", statistics.getDistanceEvaluations() - evaluationsBefore)
+					.end(theRawIDs.size());
+			Suggestions.suggest(engine, theRawIDs, uniqueIDs, config.cleaningSuggestions, kind);
+			return uniqueIDs;
+		}
 		// The shortest elements are now first
 		Collections.sort(theRawIDs);
+
+		List<CandidateIdentifier> newIDs = theRawIDs;
+		if(history != null) {
+			newIDs = new ArrayList<CandidateIdentifier>();
+			for(CandidateIdentifier candidate : theRawIDs) {
+				candidate.cleanedID = history.getCleanedID(candidate.id);
+				if(candidate.cleanedID == null) {
+					newIDs.add(candidate);
+				}
+				else {
+					uniqueIDs.add(candidate.cleanedID);
+				}
+			}
+			historyDecisions.add(theRawIDs.size() - newIDs.size());
+		}
+
+		if(!newIDs.isEmpty()) {
+			ApprovedNameIndex approvedNames = newApprovedNameIndex(config);
+			if(history != null) {
+				for(String name : history.getApprovedNames()) {
+					approvedNames.add(name);
+				}
+			}
+			int threads = config.getCleaningThreads();
+			// Cleaning a slice at a time gives the same result, as the index carries over
+			int slice = checkpoint == null ? newIDs.size() : checkpoint.getInterval();
+			for(int start = 0; start < newIDs.size(); start += slice) {
+				List<CandidateIdentifier> sliceIDs = newIDs.subList(start, Math.min(newIDs.size(), start + slice));
+				if(threads > 1) {
+					ParallelCleaner.clean(engine, sliceIDs, uniqueIDs, approvedNames, statistics, threads);
+				}
+				else {
+					cleanSequentially(engine, sliceIDs, uniqueIDs, approvedNames, statistics);
+				}
+				if(checkpoint != null) {
+					checkpoint.recordCleaning(kind, sliceIDs);
+				}
+			}
+			statistics.insertEvaluations += approvedNames.getInsertEvaluations();
+			if(approvedNames instanceof BlockingIndex) {
+				SurveyLog.info("Blocking: " + ((BlockingIndex)approvedNames).getBlockStatistics());
+			}
+			if(history != null) {
+				for(CandidateIdentifier candidate : newIDs) {
+					history.record(candidate.id, candidate.cleanedID);
+				}
+			}
+		}
+
+		SurveyLog.info("Cleaned " + theRawIDs.size() + " candidates (" + newIDs.size() + " new) with " + statistics.getDistanceEvaluations()
+				+ " distance evaluations (" + statistics.getEvaluationsSaved() + " saved over a linear scan).");
+		SurveyLog.info("Distance filters: " + statistics);
+		phase.set("newCandidates", newIDs.size()).set("distanceEvaluations", statistics.getDistanceEvaluations() - evaluationsBefore)
+				.end(theRawIDs.size());
+		Suggestions.suggest(engine, theRawIDs, uniqueIDs, config.cleaningSuggestions, kind);
+
+		return uniqueIDs;
+	}
+
+	private static void cleanSequentially(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs,
+			ApprovedNameIndex approvedNames, DistanceStatistics statistics) {
 		// For each candidate
 		// Identify their threshold and the candidate's threshold
-		// Calculate the LevenshteinDistance
+		// Search the approved names within that threshold using the configured index
 		// Check that both unique identifiers would be willing to replace each other based
 		// on current config
-		ArrayList<String> approvedNames = new ArrayList<String>();
 		for(CandidateIdentifier candidate : theRawIDs) {
-			int threshold = CandidateIdentifier.getDistanceThreshold(candidate.id);
-			int maxDistance = threshold + 1;
+			engine.checkCancelled();
+			int threshold = engine.getConfig().getDistanceThreshold(candidate.id);
 			String bestCandidate = null;
 			// Skip the cleaning process if you're unknown
-			if(!candidate.equals(AnonymizerMain.unknownActor)) {
-				for(String approvedName : approvedNames) {
-					// Don't match to myself or to unknown actors
-						int alterThreshold = CandidateIdentifier.getDistanceThreshold(approvedName) + 1;
-						int distance = LevenshteinDistance(candidate.id, approvedName);
-						// Check for symmetry (Jan should replace Jane only if Jane and Jan would both match)
-						if(distance < maxDistance && distance < alterThreshold) {				
-							bestCandidate = approvedName;
-							maxDistance = distance;
-							System.out.println("Original: " + candidate.id + " Best Candidate:" + approvedName + ", Distance: " + distance);
-						}
-					
+			if(!candidate.id.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				statistics.linearComparisons += approvedNames.size();
+				NamePattern pattern = new NamePattern(candidate.id);
+				bestCandidate = approvedNames.findClosest(pattern, threshold);
+				statistics.add(pattern.statistics);
+				if(bestCandidate != null) {
+					replacements.increment();
+					if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+						SurveyLog.debug("Original: " + candidate.id + " Best Candidate:" + bestCandidate);
+					}
 				}
 			}
 
@@ -68,27 +206,23 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 				uniqueIDs.add(candidate.cleanedID);
 			}
 		}
-
-		return uniqueIDs;
 	}
 
-	static int getDistanceThreshold(String info) {
-		int infoLength = info.length();
-		int closestThreshold;
-		if(AnonymizerMain.cleaningThresholds == null) {
-			closestThreshold = 0;
+	/**
+	 * Create the index over approved names selected by the cleaningIndex configuration flag:
+	 * "bktree" (the default) or "symspell", unless cleaningBlocking asks for a BlockingIndex.
+	 * 
+	 * @param config - the settings of the run
+	 * @return an empty index
+	 */
+	static ApprovedNameIndex newApprovedNameIndex(AnonymizerConfig config) {
+		if(!config.cleaningBlocking.equals("")) {
+			return new BlockingIndex(config);
 		}
-		else {
-			closestThreshold = AnonymizerMain.cleaningThresholds.length;
-			for(int i = 0; i < AnonymizerMain.cleaningThresholds.length; ++i) {
-				if(AnonymizerMain.cleaningThresholds[i] >= infoLength) {
-					closestThreshold = i;
-					break;
-				}
-			}
+		if(config.cleaningIndex.equalsIgnoreCase("symspell")) {
+			return new DeletionIndex(config);
 		}
-
-		return closestThreshold;
+		return new BKTree(config);
 	}
 
 	/**
@@ -108,7 +242,7 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 		int currentLowestDistance = maxDistance + 1;
 
 		for(String currentName : uniqueSet) {
-			int distance = LevenshteinDistance(target, currentName);
+			int distance = LevenshteinDistance(target, currentName, currentLowestDistance - 1, true);
 			if(distance < currentLowestDistance) {
 				currentBest = currentName;
 				currentLowestDistance = distance;
@@ -139,6 +273,21 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 	 * @return the Levenshtein Distance, or Minimum Edit Distance, which would be 3 between "kitten" and "sitting"
 	 */
 	static public int LevenshteinDistance (String s0, String s1) {
+		return LevenshteinDistance(s0, s1, true);
+	}
+
+	/**
+	 * As originally written, the first character of s1 can be skipped at no cost (newcost[0]=j-1),
+	 * so the distance we clean with is the smaller of the textbook distance to s1 and the textbook
+	 * distance to s1 without its first character.  That is what the cleaning thresholds were tuned
+	 * against, so we keep it, but it is not symmetric and so not a metric.
+	 * 
+	 * @param s0 - string to compare
+	 * @param s1 - other string to compare
+	 * @param freeLeadingSkip - true for the cleaning distance, false for the textbook (metric) distance
+	 * @return the distance between the two strings
+	 */
+	static int LevenshteinDistance (String s0, String s1, boolean freeLeadingSkip) {
 		int len0 = s0.length()+1;
 		int len1 = s1.length()+1;
 
@@ -155,7 +304,7 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 		for(int j=1;j<len1;j++) {
 
 			// initial cost of skipping prefix in String s1
-			newcost[0]=j-1;
+			newcost[0]=freeLeadingSkip ? j-1 : j;
 
 			// transformation cost for each letter in s0
 			for(int i=1;i<len0;i++) {
@@ -180,17 +329,102 @@ public class CandidateIdentifier implements Comparable<CandidateIdentifier> {
 		return cost[len0-1];
 	}
 
-	void addVisualElementsToPanel(boolean showAll, JPanel component) {
-		if(showAll || !id.equals(cleanedID)) {
-			JTextField idField, cleanedField;
-			idField = new JTextField(id);
-			idField.setEditable(false);
-			component.add(idField);
-		
-			cleanedField = new JTextField(cleanedID);
-			cleanedField.setEditable(false);
-			component.add(cleanedField);
+	/**
+	 * Scratch rows for the bounded distance, one pair per thread so the hot loop never allocates
+	 */
+	private static final ThreadLocal<int[][]> distanceRows = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[2][64];
+		}
+	};
+
+	/**
+	 * Threshold-bounded version of LevenshteinDistance(s0, s1, freeLeadingSkip).  Callers only
+	 * care whether two strings are within maxDistance of each other, so this only fills the
+	 * diagonal band of the matrix that can still hold a value of maxDistance or less, and stops
+	 * as soon as every cell in a row is beyond maxDistance.
+	 * 
+	 * @param s0 - string to compare
+	 * @param s1 - other string to compare
+	 * @param maxDistance - the largest distance we are interested in
+	 * @param freeLeadingSkip - true for the cleaning distance, false for the textbook (metric) distance
+	 * @return the distance if it is maxDistance or less, otherwise maxDistance + 1
+	 */
+	static int LevenshteinDistance(String s0, String s1, int maxDistance, boolean freeLeadingSkip) {
+		int len0 = s0.length();
+		int len1 = s1.length();
+		int limit = maxDistance + 1;
+		// With the free leading skip, the band also has to cover the diagonal one below
+		int skip = (freeLeadingSkip && len1 > 0) ? 1 : 0;
+
+		// Every edit changes the length by at most one
+		int lengthGap = Math.abs(len0 - len1);
+		if(skip == 1) {
+			lengthGap = Math.min(lengthGap, Math.abs(len0 - (len1 - 1)));
+		}
+		if(lengthGap > maxDistance) {
+			return limit;
 		}
+
+		int[][] rows = distanceRows.get();
+		if(rows[0].length < len0 + 1) {
+			rows[0] = new int[len0 + 1];
+			rows[1] = new int[len0 + 1];
+		}
+		int[] cost = rows[0];
+		int[] newcost = rows[1];
+
+		// initial cost of skipping prefix in String s0
+		for(int i = 0; i <= len0; ++i) {
+			cost[i] = Math.min(i, limit);
+		}
+
+		for(int j = 1; j <= len1; ++j) {
+			int low = Math.max(1, j - maxDistance - skip);
+			int high = Math.min(len0, j + maxDistance);
+			char c1 = s1.charAt(j - 1);
+
+			newcost[0] = Math.min(j - skip, limit);
+			int rowMinimum = limit;
+			if(low == 1) {
+				rowMinimum = newcost[0];
+			}
+			else {
+				newcost[low - 1] = limit;
+			}
+
+			for(int i = low; i <= high; ++i) {
+				int value = cost[i - 1] + (s0.charAt(i - 1) == c1 ? 0 : 1);
+				int insert = cost[i] + 1;
+				if(insert < value) {
+					value = insert;
+				}
+				int delete = newcost[i - 1] + 1;
+				if(delete < value) {
+					value = delete;
+				}
+				if(value > limit) {
+					value = limit;
+				}
+				newcost[i] = value;
+				if(value < rowMinimum) {
+					rowMinimum = value;
+				}
+			}
+			if(high < len0) {
+				newcost[high + 1] = limit;
+			}
+
+			// No cell in this row is within the threshold, so no later cell can be either
+			if(rowMinimum >= limit) {
+				return limit;
+			}
+
+			int[] swap = cost; cost = newcost; newcost = swap;
+		}
+
+		return Math.min(cost[len0], limit);
 	}
 
 }
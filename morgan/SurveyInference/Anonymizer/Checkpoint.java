@@ -0,0 +1,376 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * The progress of a run, kept on disk so a run stopped part way through can carry on from
+ * where it was rather than from the beginning.
+ *
+ * The checkpoint is a journal.  Its header identifies the data file and the settings that
+ * decide how it is cleaned; after it come records, each written whole and flushed to disk:
+ * a phase completed (elaborated, names cleaned, roles cleaned, anonymized), or the cleaning
+ * decisions of the latest checkpointInterval candidates, in the order they were made.  A
+ * record cut short by a crash is dropped when the checkpoint is read.
+ *
+ * On resume, the data file is read and elaborated again, which is quick, and the candidates
+ * the checkpoint has decisions for are cleaned as it says, with the names they approved
+ * loaded first, just as a cleaning history would be (see CleaningHistory).  Cleaning then
+ * carries on with the next candidate and gives the result an uninterrupted run would have.
+ *
+ * Records are written on a thread of their own, so the run never waits on the disk.  If a
+ * write fails the run carries on, with a warning, but without checkpoints.  A run that
+ * completes deletes its checkpoint.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class Checkpoint {
+
+	private static final int MAGIC = 0x434B5054;
+	private static final int VERSION = 1;
+
+	private static final byte PHASE = 1;
+	private static final byte DECISIONS = 2;
+
+	static final String ELABORATED = "elaborated";
+	static final String NAMES = "names";
+	static final String ROLES = "roles";
+	static final String ANONYMIZED = "anonymized";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final int interval;
+	private FileOutputStream out;
+
+	/**
+	 * Writes the records, in the order they are made
+	 */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Checkpoint writing");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private volatile boolean failed = false;
+
+	/**
+	 * What the checkpoint held when the run resumed from it: the phases completed, with the
+	 * numbers recorded for each, and the decisions for names and roles, raw then cleaned
+	 */
+	private HashMap<String, int[]> phases = new HashMap<String, int[]>();
+	private HashMap<String, List<String[]>> decisions = new HashMap<String, List<String[]>>();
+
+	private Checkpoint(File theFile, int theInterval) {
+		file = theFile;
+		interval = theInterval;
+		decisions.put(NAMES, new ArrayList<String[]>());
+		decisions.put(ROLES, new ArrayList<String[]>());
+	}
+
+	/**
+	 * Start a new checkpoint, replacing any earlier one
+	 * 
+	 * @param file - the checkpoint file
+	 * @param dataFile - the data file being processed
+	 * @param config - the settings of the run, including how many candidates are cleaned
+	 * between records
+	 * @return the checkpoint
+	 * @throws IOException - if the checkpoint can't be written
+	 */
+	static Checkpoint start(File file, File dataFile, AnonymizerConfig config) throws IOException {
+		Checkpoint checkpoint = new Checkpoint(file, config.checkpointInterval);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		writeString(data, describe(dataFile));
+		writeString(data, describeSettings(config));
+		checkpoint.out = new FileOutputStream(file);
+		checkpoint.out.write(header.toByteArray());
+		checkpoint.out.getChannel().force(false);
+		return checkpoint;
+	}
+
+	/**
+	 * Carry on from an earlier checkpoint, or start a new one if there is none
+	 * 
+	 * @param file - the checkpoint file
+	 * @param dataFile - the data file being processed
+	 * @param config - the settings of the run, which must be those of the checkpoint
+	 * @param listener - told if there is no checkpoint to resume from
+	 * @return the checkpoint, holding what was recorded before
+	 * @throws IOException - if the checkpoint can't be read, or was made for another data file
+	 * or other settings
+	 */
+	static Checkpoint resume(File file, File dataFile, AnonymizerConfig config, AnonymizerListener listener) throws IOException {
+		if(!file.exists()) {
+			listener.log("No checkpoint at " + file + "; starting from the beginning.");
+			return start(file, dataFile, config);
+		}
+		Checkpoint checkpoint = new Checkpoint(file, config.checkpointInterval);
+		RandomAccessFile in = new RandomAccessFile(file, "rw");
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+			if(!readString(in).equals(describe(dataFile))) {
+				throw new IOException(file + " is a checkpoint for another data file, or " + dataFile + " has changed since");
+			}
+			if(!readString(in).equals(describeSettings(config))) {
+				throw new IOException(file + " is a checkpoint made with other settings");
+			}
+			long complete = in.getFilePointer();
+			try {
+				while(complete < in.length()) {
+					int length = in.readInt();
+					if(length < 0 || length > in.length() - in.getFilePointer()) {
+						break;
+					}
+					byte[] record = new byte[length];
+					in.readFully(record);
+					checkpoint.read(new DataInputStream(new ByteArrayInputStream(record)));
+					complete = in.getFilePointer();
+				}
+			} catch (EOFException e) {
+				// The last record was cut short
+			}
+			in.setLength(complete);
+		} finally {
+			in.close();
+		}
+		checkpoint.out = new FileOutputStream(file, true);
+		return checkpoint;
+	}
+
+	/**
+	 * @return how many candidates are cleaned between records
+	 */
+	int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @param phase - one of the phases above
+	 * @return the numbers recorded when the phase completed, or null if it hasn't
+	 */
+	int[] getPhase(String phase) {
+		return phases.get(phase);
+	}
+
+	/**
+	 * @param kind - NAMES or ROLES
+	 * @return the cleaning decisions recorded, raw then cleaned, in the order they were made
+	 */
+	List<String[]> getDecisions(String kind) {
+		return decisions.get(kind);
+	}
+
+	/**
+	 * Record that a phase has completed
+	 * 
+	 * @param phase - one of the phases above
+	 * @param numbers - anything to check on resume, such as how many candidates there were
+	 */
+	void recordPhase(final String phase, final int... numbers) {
+		submit(new Record() {
+			void write(DataOutputStream data) throws IOException {
+				data.writeByte(PHASE);
+				writeString(data, phase);
+				data.writeInt(numbers.length);
+				for(int number : numbers) {
+					data.writeInt(number);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Record how some candidates were cleaned
+	 * 
+	 * @param kind - NAMES or ROLES
+	 * @param candidates - the candidates, cleaned, in the order they were cleaned
+	 */
+	void recordCleaning(final String kind, List<CandidateIdentifier> candidates) {
+		// Copied now, so the run can carry on while they are written
+		final String[] pairs = new String[candidates.size() * 2];
+		for(int i = 0; i < candidates.size(); ++i) {
+			pairs[2 * i] = candidates.get(i).id;
+			pairs[2 * i + 1] = candidates.get(i).cleanedID;
+		}
+		submit(new Record() {
+			void write(DataOutputStream data) throws IOException {
+				data.writeByte(DECISIONS);
+				writeString(data, kind);
+				data.writeInt(pairs.length / 2);
+				for(int i = 0; i < pairs.length; i += 2) {
+					writeString(data, pairs[i]);
+					boolean approved = pairs[i].equals(pairs[i + 1]);
+					data.writeBoolean(approved);
+					if(!approved) {
+						writeString(data, pairs[i + 1]);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait for the records still being written, and stop writing
+	 * 
+	 * @param completed - true if the run completed, in which case the checkpoint is deleted
+	 */
+	void close(boolean completed) {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			SurveyLog.warn("Could not close the checkpoint " + file + ": " + e);
+		}
+		if(completed && !file.delete()) {
+			SurveyLog.warn("Could not delete the checkpoint " + file);
+		}
+	}
+
+	private void read(DataInputStream record) throws IOException {
+		byte type = record.readByte();
+		String key = readString(record);
+		if(type == PHASE) {
+			int[] numbers = new int[record.readInt()];
+			for(int i = 0; i < numbers.length; ++i) {
+				numbers[i] = record.readInt();
+			}
+			phases.put(key, numbers);
+		}
+		else if(type == DECISIONS) {
+			List<String[]> kindDecisions = decisions.get(key);
+			int count = record.readInt();
+			for(int i = 0; i < count; ++i) {
+				String raw = readString(record);
+				String cleaned = record.readBoolean() ? raw : readString(record);
+				kindDecisions.add(new String[] {raw, cleaned});
+			}
+		}
+		else {
+			throw new IOException(file + " holds a record of unknown type " + type);
+		}
+	}
+
+	/**
+	 * A record, encoded when its turn to be written comes
+	 */
+	private abstract static class Record {
+		abstract void write(DataOutputStream data) throws IOException;
+	}
+
+	private void submit(final Record record) {
+		if(failed) {
+			return;
+		}
+		writer.execute(new Runnable() {
+			public void run() {
+				if(failed) {
+					return;
+				}
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					DataOutputStream data = new DataOutputStream(bytes);
+					data.writeInt(0);
+					record.write(data);
+					data.flush();
+					byte[] encoded = bytes.toByteArray();
+					int length = encoded.length - 4;
+					encoded[0] = (byte)(length >>> 24);
+					encoded[1] = (byte)(length >>> 16);
+					encoded[2] = (byte)(length >>> 8);
+					encoded[3] = (byte)length;
+					out.write(encoded);
+					out.getChannel().force(false);
+				} catch (IOException e) {
+					failed = true;
+					SurveyLog.warn("Could not write the checkpoint " + file + ", carrying on without checkpoints: " + e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return what identifies the data file: where it is, how long it is and when it changed
+	 */
+	private static String describe(File dataFile) {
+		return dataFile.getAbsolutePath() + "|" + dataFile.length() + "|" + dataFile.lastModified();
+	}
+
+	/**
+	 * @return the settings that decide which candidates there are and how they are cleaned
+	 */
+	private static String describeSettings(AnonymizerConfig config) {
+		return Arrays.toString(config.columnsToAnonymize) + "|" + Arrays.toString(config.columnsIndicatingRespondent)
+				+ "|" + config.dataDelimiter + "|" + config.entryDelimiter + "|" + config.implicitRole
+				+ "|" + config.columnHasRole + "|" + Arrays.toString(config.cleaningThresholds)
+				+ "|" + Anonymizer.UNKNOWN_ACTOR + "|" + config.cleaningMode + "|" + config.cleaningBlocking
+				+ "|" + config.cleaningHistory + "|" + config.rebuildCleaningHistory;
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cleaning decisions of earlier runs, so a new extract only has to fuzzy-match the
+ * candidates no earlier run has seen.
+ *
+ * A history holds the approved names, in the order they were approved, and for every other
+ * raw identifier the approved name it was cleaned to.  cleanCandidateIDs takes the cleaned
+ * identifier of a known candidate straight from the history, and searches for the others
+ * among the names approved so far, this run's and earlier runs' alike, with the earliest
+ * approved still winning ties.  New decisions are added to the history, which is then saved.
+ *
+ * Decisions once made are kept: a new candidate never changes how a known one was cleaned,
+ * although a full rebuild of the same data may clean a few names differently, as the order of
+ * the candidates is then different.  Rebuild with the rebuildCleaningHistory flag after
+ * changing how names are recorded.
+ *
+ * On disk, the approved names are written once each and every other decision is written as
+ * the raw identifier and the number of its approved name.  The cleaning thresholds and the
+ * unknown actor are written too; a history made with other settings is ignored.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class CleaningHistory {
+
+	private static final int MAGIC = 0x434C4E48;
+	private static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The approved names, in the order they were approved
+	 */
+	private ArrayList<String> approved = new ArrayList<String>();
+
+	/**
+	 * For each raw identifier, the number of its approved name
+	 */
+	private HashMap<String, Integer> decisions = new HashMap<String, Integer>();
+
+	/**
+	 * The raw identifiers recorded since the history was started, read or copied, in the order
+	 * they were recorded
+	 */
+	private ArrayList<String> recorded = new ArrayList<String>();
+
+	/**
+	 * The cleaning thresholds the decisions were made with
+	 */
+	private final int[] thresholds;
+
+	/**
+	 * Start an empty history
+	 * 
+	 * @param config - the settings the decisions will be made with
+	 */
+	CleaningHistory(AnonymizerConfig config) {
+		this(config.cleaningThresholds);
+	}
+
+	private CleaningHistory(int[] theThresholds) {
+		thresholds = theThresholds;
+	}
+
+	/**
+	 * Read a history, or start an empty one if the file doesn't exist or was made with other
+	 * settings.
+	 * 
+	 * @param file - the history file
+	 * @param config - the settings of this run
+	 * @param listener - told if the history has to be rebuilt
+	 * @return the history
+	 * @throws IOException - if the file exists but can't be read
+	 */
+	static CleaningHistory load(File file, AnonymizerConfig config, AnonymizerListener listener) throws IOException {
+		CleaningHistory history = new CleaningHistory(config);
+		if(!file.exists()) {
+			return history;
+		}
+		if(!history.read(file)) {
+			listener.log("The cleaning history in " + file + " was made with other cleaning settings; it will be rebuilt.");
+		}
+		return history;
+	}
+
+	/**
+	 * Read the decisions in a history file into this empty history
+	 * 
+	 * @param file - the history file
+	 * @return false if it was made with other settings, leaving this history empty
+	 * @throws IOException - if it can't be read
+	 */
+	private boolean read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a cleaning history");
+			}
+			int thresholdCount = in.readInt();
+			int[] fileThresholds = null;
+			if(thresholdCount >= 0) {
+				fileThresholds = new int[thresholdCount];
+				for(int i = 0; i < thresholdCount; ++i) {
+					fileThresholds[i] = in.readInt();
+				}
+			}
+			String unknownActor = readString(in);
+			if(!Arrays.equals(fileThresholds, thresholds)
+					|| !unknownActor.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				return false;
+			}
+
+			int approvedCount = in.readInt();
+			approved.ensureCapacity(approvedCount);
+			for(int i = 0; i < approvedCount; ++i) {
+				String name = readString(in);
+				approved.add(name);
+				decisions.put(name, i);
+			}
+			int decisionCount = in.readInt();
+			for(int i = 0; i < decisionCount; ++i) {
+				String raw = readString(in);
+				decisions.put(raw, in.readInt());
+			}
+		} finally {
+			in.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Write the history, replacing the file only once it is complete and reads back the same
+	 * 
+	 * @param file - the history file
+	 * @throws IOException - if the file can't be written
+	 */
+	void save(File file) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(thresholds == null ? -1 : thresholds.length);
+			if(thresholds != null) {
+				for(int threshold : thresholds) {
+					out.writeInt(threshold);
+				}
+			}
+			writeString(out, Anonymizer.UNKNOWN_ACTOR);
+
+			out.writeInt(approved.size());
+			for(String name : approved) {
+				writeString(out, name);
+			}
+			// Every raw identifier but the approved names themselves
+			int decisionCount = 0;
+			for(String raw : decisions.keySet()) {
+				if(!approved.get(decisions.get(raw)).equals(raw)) {
+					++decisionCount;
+				}
+			}
+			out.writeInt(decisionCount);
+			for(String raw : decisions.keySet()) {
+				int number = decisions.get(raw);
+				if(!approved.get(number).equals(raw)) {
+					writeString(out, raw);
+					out.writeInt(number);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		CleaningHistory written = new CleaningHistory(thresholds);
+		if(!written.read(temporary) || !written.approved.equals(approved) || !written.decisions.equals(decisions)) {
+			temporary.delete();
+			throw new IOException("The cleaning history written to " + temporary + " does not read back the same; " + file + " is left as it was");
+		}
+		// One step, so a crash leaves either the old history or the new one
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return a copy of the history, which records nothing since it was taken, so cleaning can
+	 * go on against it while this one changes
+	 */
+	CleaningHistory copy() {
+		CleaningHistory copy = new CleaningHistory(thresholds);
+		copy.approved = new ArrayList<String>(approved);
+		copy.decisions = new HashMap<String, Integer>(decisions);
+		return copy;
+	}
+
+	/**
+	 * @return the raw identifiers recorded since the history was started, read or copied, in
+	 * the order they were recorded
+	 */
+	List<String> getRecorded() {
+		return recorded;
+	}
+
+	/**
+	 * @param raw - a raw identifier
+	 * @return what it was cleaned to, or null if no earlier run has seen it
+	 */
+	String getCleanedID(String raw) {
+		Integer number = decisions.get(raw);
+		return number == null ? null : approved.get(number);
+	}
+
+	/**
+	 * @return the approved names, in the order they were approved
+	 */
+	List<String> getApprovedNames() {
+		return approved;
+	}
+
+	/**
+	 * Remember how a new candidate was cleaned
+	 * 
+	 * @param raw - the raw identifier
+	 * @param cleaned - the approved name it was cleaned to; itself if it was approved
+	 */
+	void record(String raw, String cleaned) {
+		recorded.add(raw);
+		if(raw.equals(cleaned)) {
+			approved.add(raw);
+			decisions.put(raw, approved.size() - 1);
+		}
+		else {
+			decisions.put(raw, decisions.get(cleaned));
+		}
+	}
+
+	/**
+	 * Clean a raw identifier to another name from now on, as a reviewer decided.  The name must
+	 * be an approved name, or the raw identifier itself, which is then approved.  If the raw
+	 * identifier was approved it no longer is, and the identifiers cleaned to it are cleaned to
+	 * the new name too.
+	 * 
+	 * @param raw - the raw identifier
+	 * @param cleaned - the name it should be cleaned to
+	 * @return false if the name is neither approved nor the raw identifier
+	 */
+	boolean correct(String raw, String cleaned) {
+		Integer number = decisions.get(cleaned);
+		if(number != null && approved.get(number).equals(cleaned)) {
+			Integer was = decisions.get(raw);
+			if(was != null && approved.get(was).equals(raw) && !raw.equals(cleaned)) {
+				unapprove(was, number);
+			}
+			else {
+				decisions.put(raw, number);
+			}
+			return true;
+		}
+		if(raw.equals(cleaned)) {
+			approved.add(raw);
+			decisions.put(raw, approved.size() - 1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Take a name out of the approved names, renumbering those approved after it, and clean
+	 * everything that was cleaned to it to another approved name instead
+	 * 
+	 * @param removed - the number of the name to take out
+	 * @param replacement - the number of the name to clean to instead
+	 */
+	private void unapprove(int removed, int replacement) {
+		approved.remove(removed);
+		if(replacement > removed) {
+			--replacement;
+		}
+		for(Map.Entry<String, Integer> decision : decisions.entrySet()) {
+			int number = decision.getValue();
+			if(number == removed) {
+				decision.setValue(replacement);
+			}
+			else if(number > removed) {
+				decision.setValue(number - 1);
+			}
+		}
+	}
+
+	/**
+	 * @return how many raw identifiers the history knows
+	 */
+	int size() {
+		return decisions.size();
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Cleans candidates by clustering them: every pair of names close enough to replace one
+ * another is linked, and each group of linked names becomes one cluster, cleaned to a single
+ * representative.  Unlike the greedy pass, a chain such as Jon, John, Johnn ends up as one
+ * name in one run, whichever way round its links were found.
+ *
+ * The links are found in one pass over the candidates, shortest first: each is searched for
+ * in the configured index (see ApprovedNameIndex.findAll) among the candidates before it, with
+ * the same distance and thresholds the greedy pass uses, and then added to it.  The clusters
+ * are kept in a union-find structure, with path compression and union by rank, so merging
+ * costs next to nothing whatever order the links come in.
+ *
+ * A cluster's representative is its most central name, the one linked to the most others;
+ * ties go to the shorter name, then the alphabetically first.  Candidates are taken in order
+ * of length and then alphabetically, so the result doesn't depend on the order of the data.
+ *
+ * Links are transitive, so a long chain of small differences can join quite different names;
+ * review the clusters after changing the thresholds.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class ClusterCleaner {
+
+	/**
+	 * How many links clustering has found, and how many clusters of more than one name it made
+	 */
+	static SurveyLog.Counter links = SurveyLog.counter("Links between similar names");
+	static SurveyLog.Counter clusters = SurveyLog.counter("Clusters of similar names");
+
+	/**
+	 * Shortest first, then alphabetically
+	 */
+	private static final Comparator<CandidateIdentifier> ORDER = new Comparator<CandidateIdentifier>() {
+		public int compare(CandidateIdentifier a, CandidateIdentifier b) {
+			if(a.id.length() != b.id.length()) {
+				return a.id.length() < b.id.length() ? -1 : 1;
+			}
+			return a.id.compareTo(b.id);
+		}
+	};
+
+	/**
+	 * Clean the candidates, each to the representative of its cluster
+	 * 
+	 * @param engine - the Anonymizer cleaning them, whose settings apply
+	 * @param theRawIDs - the candidates
+	 * @param uniqueIDs - receives every cleaned identifier
+	 * @param statistics - receives what the cleaning cost
+	 */
+	static void clean(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs, DistanceStatistics statistics) {
+		AnonymizerConfig config = engine.getConfig();
+		ArrayList<CandidateIdentifier> candidates = new ArrayList<CandidateIdentifier>(theRawIDs);
+		Collections.sort(candidates, ORDER);
+		int count = candidates.size();
+
+		// 1. Link each candidate to the similar candidates before it
+		UnionFind sets = new UnionFind(count);
+		int[] degree = new int[count];
+		int[] positionOf = new int[count];
+		ApprovedNameIndex index = CandidateIdentifier.newApprovedNameIndex(config);
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		long linkCount = 0;
+		for(int i = 0; i < count; ++i) {
+			engine.checkCancelled();
+			CandidateIdentifier candidate = candidates.get(i);
+			// The unknown actor stays on its own
+			if(candidate.id.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				continue;
+			}
+			NamePattern pattern = new NamePattern(candidate.id);
+			found.clear();
+			statistics.linearComparisons += index.size();
+			index.findAll(pattern, config.getDistanceThreshold(candidate.id), found);
+			statistics.add(pattern.statistics);
+			for(int number : found) {
+				int j = positionOf[number];
+				sets.union(i, j);
+				++degree[i];
+				++degree[j];
+			}
+			linkCount += found.size();
+			positionOf[index.size()] = i;
+			index.add(candidate.id);
+		}
+		statistics.insertEvaluations += index.getInsertEvaluations();
+		links.add(linkCount);
+
+		// 2. Choose each cluster's representative
+		int[] representative = new int[count];
+		int[] size = new int[count];
+		Arrays.fill(representative, -1);
+		for(int i = 0; i < count; ++i) {
+			int root = sets.find(i);
+			++size[root];
+			int best = representative[root];
+			if(best == -1 || degree[i] > degree[best]
+					|| (degree[i] == degree[best] && ORDER.compare(candidates.get(i), candidates.get(best)) < 0)) {
+				representative[root] = i;
+			}
+		}
+
+		// 3. Clean each candidate to it
+		int clusterCount = 0;
+		int largest = 0;
+		for(int i = 0; i < count; ++i) {
+			CandidateIdentifier candidate = candidates.get(i);
+			int root = sets.find(i);
+			if(i == root && size[root] > 1) {
+				++clusterCount;
+				largest = Math.max(largest, size[root]);
+			}
+			candidate.cleanedID = candidates.get(representative[root]).id;
+			if(!candidate.cleanedID.equals(candidate.id)) {
+				CandidateIdentifier.replacements.increment();
+				if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+					SurveyLog.debug("Original: " + candidate.id + " Cluster:" + candidate.cleanedID);
+				}
+			}
+			uniqueIDs.add(candidate.cleanedID);
+		}
+		clusters.add(clusterCount);
+		SurveyLog.info("Clustered " + count + " candidates: " + linkCount + " links, " + clusterCount
+				+ " clusters of more than one name, the largest with " + largest + ".");
+	}
+
+	/**
+	 * Disjoint sets over 0 to n - 1, with path compression and union by rank
+	 */
+	static class UnionFind {
+
+		private final int[] parent;
+		private final byte[] rank;
+
+		UnionFind(int n) {
+			parent = new int[n];
+			rank = new byte[n];
+			for(int i = 0; i < n; ++i) {
+				parent[i] = i;
+			}
+		}
+
+		/**
+		 * @return the root of the set holding x
+		 */
+		int find(int x) {
+			int root = x;
+			while(parent[root] != root) {
+				root = parent[root];
+			}
+			// Point everything on the way straight at the root
+			while(parent[x] != root) {
+				int next = parent[x];
+				parent[x] = root;
+				x = next;
+			}
+			return root;
+		}
+
+		/**
+		 * Merge the sets holding a and b
+		 * @return true if they were different sets
+		 */
+		boolean union(int a, int b) {
+			int rootA = find(a);
+			int rootB = find(b);
+			if(rootA == rootB) {
+				return false;
+			}
+			if(rank[rootA] < rank[rootB]) {
+				parent[rootA] = rootB;
+			}
+			else if(rank[rootA] > rank[rootB]) {
+				parent[rootB] = rootA;
+			}
+			else {
+				parent[rootB] = rootA;
+				++rank[rootA];
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Reports the progress of a run to a console, for running without a display.  The run log
+ * goes through SurveyLog, so it keeps its place among the other messages.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class ConsoleListener implements AnonymizerListener {
+
+	/**
+	 * How many configuration errors were reported
+	 */
+	int configurationErrors = 0;
+
+	public void setStage(String stage) {
+	}
+
+	public void setProgressMaximum(int maximum) {
+	}
+
+	public void setProgress(int value) {
+	}
+
+	public void log(String message) {
+		SurveyLog.info(message);
+	}
+
+	public void configurationError(String title, String message) {
+		++configurationErrors;
+		SurveyLog.error(title + ": " + message);
+	}
+
+	public boolean isCancelled() {
+		return false;
+	}
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A symmetric-deletion (SymSpell-style) index over approved names.
+ *
+ * If two strings are within edit distance k, then deleting at most k characters from each of
+ * them gives a common string.  So every approved name is filed under every string obtained by
+ * deleting up to its own threshold of characters, and a candidate only has to look up the
+ * strings obtained by deleting up to its threshold of characters; a handful of hash lookups
+ * replace the comparison against every approved name.  The names found this way are then
+ * checked with the real distance, so the result is exactly that of a linear scan.
+ *
+ * Because the cleaning distance lets the first character of the approved name be skipped for
+ * free, approved names are also filed under the deletions of the name without its first
+ * character.
+ *
+ * The deletion variants are never stored as strings: each posting is a single long holding a
+ * 32-bit fingerprint of the variant and the number of the approved name, in an open-addressing
+ * table.  A fingerprint collision can only add a name to be checked, never lose one.
+ *
+ * The number of variants grows quickly with length and threshold, so a name that would need
+ * more than MAX_VARIANTS_PER_NAME of them is kept in a small BK-tree instead; searches look in
+ * both and keep the closest, earliest-approved name.  With the usual thresholds this puts
+ * short names, and nearly all roles, in the deletion dictionary.
+ *
+ * Entries are generated as names are approved, so the index only ever holds what is needed.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class DeletionIndex implements ApprovedNameIndex {
+
+	/**
+	 * Names needing more deletion variants than this go into the BK-tree
+	 */
+	static int MAX_VARIANTS_PER_NAME = 400;
+
+	/**
+	 * The approved names, and their thresholds, in the order they were approved
+	 */
+	ArrayList<String> names = new ArrayList<String>();
+	int[] thresholds = new int[16];
+
+	/**
+	 * Postings, each (fingerprint << 32 | name number + 1), zero for an empty slot
+	 */
+	private long[] postings = new long[1024];
+	private int postingCount = 0;
+
+	/**
+	 * The longest name in the deletion dictionary, so long targets can skip it entirely
+	 */
+	private int longestIndexedName = -1;
+
+	/**
+	 * Names too long to keep in the deletion dictionary
+	 */
+	BKTree longNames;
+
+	/**
+	 * The settings whose cleaning thresholds the names are kept with
+	 */
+	private final AnonymizerConfig config;
+
+	/**
+	 * Scratch space for a single add or search, one per thread
+	 */
+	private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * @param theConfig - the settings whose cleaning thresholds apply to the names
+	 */
+	DeletionIndex(AnonymizerConfig theConfig) {
+		config = theConfig;
+		longNames = new BKTree(theConfig);
+	}
+
+	public void add(String name) {
+		int id = names.size();
+		names.add(name);
+		if(id == thresholds.length) {
+			int[] newThresholds = new int[id * 2];
+			System.arraycopy(thresholds, 0, newThresholds, 0, id);
+			thresholds = newThresholds;
+		}
+		int threshold = config.getDistanceThreshold(name);
+		thresholds[id] = threshold;
+
+		if(countVariants(name.length(), threshold) > MAX_VARIANTS_PER_NAME) {
+			longNames.add(name, id);
+			return;
+		}
+
+		Scratch s = scratch.get();
+		s.variants.clear();
+		collectVariants(name, 0, threshold, s);
+		if(name.length() > 0) {
+			collectVariants(name, 1, threshold, s);
+		}
+		for(int i = 0; i < s.variants.size; ++i) {
+			addPosting(s.variants.values[i], id);
+		}
+		longestIndexedName = Math.max(longestIndexedName, name.length());
+	}
+
+	public String findClosest(NamePattern target, int maxDistance) {
+		if(names.isEmpty()) {
+			return null;
+		}
+		int best = -1;
+		int bestDistance = maxDistance;
+
+		// Every edit changes the length by at most one, and the free leading skip by one more
+		if(target.name.length() - maxDistance - 1 <= longestIndexedName) {
+			Scratch s = scratch.get();
+			s.variants.clear();
+			collectVariants(target.name, 0, maxDistance, s);
+			s.startSearch(names.size());
+
+			for(int v = 0; v < s.variants.size; ++v) {
+				int fingerprint = (int)(s.variants.values[v] >>> 32);
+				int mask = postings.length - 1;
+				for(int slot = slotFor(fingerprint, mask); postings[slot] != 0; slot = (slot + 1) & mask) {
+					if((int)(postings[slot] >>> 32) != fingerprint) {
+						continue;
+					}
+					int id = (int)postings[slot] - 1;
+					if(!s.visit(id)) {
+						continue;
+					}
+					int acceptable = Math.min(bestDistance, thresholds[id]);
+					if(best != -1 && id > best && acceptable == bestDistance) {
+						// It could at best tie, and the earlier name wins ties
+						--acceptable;
+					}
+					if(acceptable < 0) {
+						continue;
+					}
+					int distance = target.distance(names.get(id), acceptable, true);
+					if(distance <= acceptable) {
+						if(best == -1 || distance < bestDistance || id < best) {
+							best = id;
+							bestDistance = distance;
+						}
+					}
+				}
+			}
+		}
+
+		if(longNames.size() > 0) {
+			int[] longDistance = new int[1];
+			BKTree.Node longBest = longNames.findClosestNode(target, bestDistance, longDistance);
+			if(longBest != null) {
+				if(best == -1 || longDistance[0] < bestDistance || longBest.order < best) {
+					best = longBest.order;
+				}
+			}
+		}
+
+		return best == -1 ? null : names.get(best);
+	}
+
+	public void findAll(NamePattern target, int maxDistance, List<Integer> found) {
+		if(names.isEmpty()) {
+			return;
+		}
+		if(target.name.length() - maxDistance - 1 <= longestIndexedName) {
+			Scratch s = scratch.get();
+			s.variants.clear();
+			collectVariants(target.name, 0, maxDistance, s);
+			s.startSearch(names.size());
+
+			for(int v = 0; v < s.variants.size; ++v) {
+				int fingerprint = (int)(s.variants.values[v] >>> 32);
+				int mask = postings.length - 1;
+				for(int slot = slotFor(fingerprint, mask); postings[slot] != 0; slot = (slot + 1) & mask) {
+					if((int)(postings[slot] >>> 32) != fingerprint) {
+						continue;
+					}
+					int id = (int)postings[slot] - 1;
+					if(!s.visit(id)) {
+						continue;
+					}
+					int acceptable = Math.min(maxDistance, thresholds[id]);
+					if(target.distance(names.get(id), acceptable, true) <= acceptable) {
+						found.add(id);
+					}
+				}
+			}
+		}
+		longNames.findAll(target, maxDistance, found);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	public long getInsertEvaluations() {
+		return longNames.getInsertEvaluations();
+	}
+
+	/**
+	 * @return how many deletion postings are stored
+	 */
+	int getPostingCount() {
+		return postingCount;
+	}
+
+	/**
+	 * How many strings deleting up to maxDeletes characters could give, counting those of the
+	 * name without its first character too.
+	 */
+	static long countVariants(int length, int maxDeletes) {
+		long total = 0;
+		long choose = 1;
+		for(int i = 0; i <= maxDeletes && i <= length; ++i) {
+			total += choose;
+			choose = choose * (length - i) / (i + 1);
+		}
+		return total * 2;
+	}
+
+	/**
+	 * Collect the fingerprints of every string obtained by deleting up to maxDeletes characters
+	 * from name.substring(from).
+	 */
+	private static void collectVariants(String name, int from, int maxDeletes, Scratch s) {
+		int length = name.length() - from;
+		if(s.chars.length < length) {
+			s.chars = new char[length];
+			s.deleted = new boolean[length];
+		}
+		name.getChars(from, name.length(), s.chars, 0);
+		collectVariants(s, length, 0, maxDeletes);
+	}
+
+	private static void collectVariants(Scratch s, int length, int start, int deletesLeft) {
+		s.variants.add(fingerprint(s.chars, s.deleted, length));
+		if(deletesLeft == 0) {
+			return;
+		}
+		for(int p = start; p < length; ++p) {
+			s.deleted[p] = true;
+			collectVariants(s, length, p + 1, deletesLeft - 1);
+			s.deleted[p] = false;
+		}
+	}
+
+	/**
+	 * A 64-bit fingerprint of the characters that have not been deleted.  Zero marks an
+	 * empty slot, so it is never returned.  The postings keep the top 32 bits.
+	 */
+	private static long fingerprint(char[] chars, boolean[] deleted, int length) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < length; ++i) {
+			if(!deleted[i]) {
+				hash ^= chars[i];
+				hash *= 0x100000001b3L;
+			}
+		}
+		// Finish with the MurmurHash3 mixer so nearby strings spread across the table
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == 0 ? 1 : hash;
+	}
+
+	private static int slotFor(int fingerprint, int mask) {
+		return (fingerprint * 0x9E3779B9) & mask;
+	}
+
+	private void addPosting(long variant, int id) {
+		if((postingCount + 1) * 2 > postings.length) {
+			long[] oldPostings = postings;
+			postings = new long[oldPostings.length * 2];
+			for(int i = 0; i < oldPostings.length; ++i) {
+				if(oldPostings[i] != 0) {
+					insertPosting(oldPostings[i]);
+				}
+			}
+		}
+		insertPosting((variant & 0xFFFFFFFF00000000L) | (id + 1));
+		++postingCount;
+	}
+
+	private void insertPosting(long posting) {
+		int mask = postings.length - 1;
+		int slot = slotFor((int)(posting >>> 32), mask);
+		while(postings[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		postings[slot] = posting;
+	}
+
+	/**
+	 * Per-thread scratch space: the variant being built, the set of fingerprints collected so
+	 * far, and which approved names a search has already checked.
+	 */
+	static class Scratch {
+		char[] chars = new char[32];
+		boolean[] deleted = new boolean[32];
+		FingerprintSet variants = new FingerprintSet();
+		int[] visitedStamp = new int[0];
+		int stamp = 0;
+
+		void startSearch(int nameCount) {
+			if(visitedStamp.length < nameCount) {
+				visitedStamp = new int[Math.max(nameCount, visitedStamp.length * 2)];
+				stamp = 0;
+			}
+			++stamp;
+			if(stamp == Integer.MAX_VALUE) {
+				Arrays.fill(visitedStamp, 0);
+				stamp = 1;
+			}
+		}
+
+		/**
+		 * @return true the first time a name is seen in this search
+		 */
+		boolean visit(int id) {
+			if(visitedStamp[id] == stamp) {
+				return false;
+			}
+			visitedStamp[id] = stamp;
+			return true;
+		}
+	}
+
+	/**
+	 * A reusable set of non-zero fingerprints that remembers insertion order
+	 */
+	static class FingerprintSet {
+		long[] table = new long[256];
+		long[] values = new long[128];
+		int size = 0;
+
+		void clear() {
+			if(size > 0) {
+				Arrays.fill(table, 0);
+				size = 0;
+			}
+		}
+
+		void add(long value) {
+			if((size + 1) * 2 > table.length) {
+				long[] oldValues = values;
+				int oldSize = size;
+				table = new long[table.length * 2];
+				size = 0;
+				for(int i = 0; i < oldSize; ++i) {
+					insert(oldValues[i]);
+				}
+			}
+			insert(value);
+		}
+
+		private void insert(long value) {
+			int mask = table.length - 1;
+			int slot = (int)(value ^ (value >>> 32)) & mask;
+			while(table[slot] != 0) {
+				if(table[slot] == value) {
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+			if(size == values.length) {
+				long[] newValues = new long[size * 2];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+			values[size++] = value;
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+/**
+ * Counts how many comparisons each stage of the NamePattern filter cascade rejected, and how
+ * many went on to the full edit distance.  cleanCandidateIDs also uses it to report what a
+ * whole cleaning pass cost, and what it saved over a linear scan.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class DistanceStatistics {
+
+	/**
+	 * Comparisons rejected because the lengths differ by more than the threshold
+	 */
+	long lengthRejected = 0;
+	/**
+	 * Comparisons rejected by the character-histogram (bag) distance
+	 */
+	long bagRejected = 0;
+	/**
+	 * Comparisons rejected by the bigram count filter
+	 */
+	long qgramRejected = 0;
+	/**
+	 * Comparisons that passed every filter and had the full edit distance computed
+	 */
+	long computed = 0;
+	/**
+	 * Distance evaluations spent adding approved names to an index
+	 */
+	long insertEvaluations = 0;
+	/**
+	 * Comparisons a linear scan over the approved names would have made
+	 */
+	long linearComparisons = 0;
+
+	/**
+	 * Add another set of counts to this one
+	 * @param other - the counts to add
+	 */
+	void add(DistanceStatistics other) {
+		lengthRejected += other.lengthRejected;
+		bagRejected += other.bagRejected;
+		qgramRejected += other.qgramRejected;
+		computed += other.computed;
+		insertEvaluations += other.insertEvaluations;
+		linearComparisons += other.linearComparisons;
+	}
+
+	/**
+	 * @return every comparison requested
+	 */
+	long getComparisons() {
+		return lengthRejected + bagRejected + qgramRejected + computed;
+	}
+
+	/**
+	 * @return every distance evaluation, for searches and insertions
+	 */
+	long getDistanceEvaluations() {
+		return getComparisons() + insertEvaluations;
+	}
+
+	/**
+	 * @return how many distance evaluations the index saved over a linear scan
+	 */
+	long getEvaluationsSaved() {
+		return linearComparisons - getDistanceEvaluations();
+	}
+
+	@Override
+	public String toString() {
+		return getComparisons() + " comparisons: " + lengthRejected + " rejected by length, "
+				+ bagRejected + " by character counts, " + qgramRejected + " by bigrams, "
+				+ computed + " computed in full";
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Pseudonyms derived from the cleaned name itself: the first 64 bits of an HMAC-SHA256 of the
+ * name, under a secret key read from a local file, written as "Name" and 16 hex digits.
+ *
+ * Unlike numbering the names of a run, or a PseudonymRegistry, this needs no shared state:
+ * any thread, file or partition holding the same key gives a name the same pseudonym, in any
+ * order, so they can all be anonymized independently.  Without the key a pseudonym can't be
+ * traced back to a name by hashing guesses, so the key file must be kept as private as the
+ * survey data itself, and kept byte for byte: a different key gives different pseudonyms.
+ *
+ * Two names sharing a pseudonym would merge two people in the output, so every pseudonym
+ * given out is remembered and a second name arriving at one fails the run.  This only covers
+ * the names of one instance; with 64 bits a collision among a million names has a chance of
+ * about 1 in 37 million.
+ *
+ * Instances are thread-safe.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class KeyedPseudonyms {
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Shorter keys are refused; the key should be random, 32 bytes is plenty
+	 */
+	static final int MIN_KEY_LENGTH = 16;
+
+	private final SecretKeySpec key;
+
+	/**
+	 * A Mac can only compute one HMAC at a time, so each thread gets its own
+	 */
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+		@Override
+		protected Mac initialValue() {
+			try {
+				Mac mac = Mac.getInstance(ALGORITHM);
+				mac.init(key);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(ALGORITHM + " is not available", e);
+			}
+		}
+	};
+
+	/**
+	 * The name each pseudonym given out belongs to
+	 */
+	private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * @param keyBytes - the secret key
+	 */
+	KeyedPseudonyms(byte[] keyBytes) {
+		key = new SecretKeySpec(keyBytes, ALGORITHM);
+	}
+
+	/**
+	 * Read the key from a file; every byte of it is the key, including any trailing newline.
+	 * A key can be made with, for instance, head -c 32 /dev/urandom > survey.key
+	 * 
+	 * @param keyFile - the file holding the secret key
+	 * @return pseudonyms under that key
+	 * @throws IOException - if the file can't be read or is too short to be a key
+	 */
+	public static KeyedPseudonyms open(File keyFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(keyFile, "r");
+		byte[] keyBytes;
+		try {
+			if(file.length() > 1024) {
+				throw new IOException(keyFile + " is too large to be a pseudonym key");
+			}
+			keyBytes = new byte[(int)file.length()];
+			file.readFully(keyBytes);
+		} finally {
+			file.close();
+		}
+		if(keyBytes.length < MIN_KEY_LENGTH) {
+			throw new IOException(keyFile + " holds " + keyBytes.length + " bytes; a pseudonym key needs at least " + MIN_KEY_LENGTH);
+		}
+		return new KeyedPseudonyms(keyBytes);
+	}
+
+	/**
+	 * @param name - a cleaned name
+	 * @return its pseudonym, the same for the same name and key in any run
+	 * @throws IllegalStateException - if another name already has this pseudonym
+	 */
+	public String getPseudonym(String name) {
+		String pseudonym = derive(name);
+		String holder = names.putIfAbsent(pseudonym, name);
+		if(holder != null && !holder.equals(name)) {
+			throw new IllegalStateException("Pseudonym collision: " + holder + " and " + name + " both hash to " + pseudonym
+					+ ".  Use a new pseudonym key.");
+		}
+		return pseudonym;
+	}
+
+	/**
+	 * @return how many distinct pseudonyms have been given out
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return the pseudonym of the name, without checking for collisions
+	 */
+	String derive(String name) {
+		byte[] hmac = macs.get().doFinal(name.getBytes(UTF8));
+		char[] chars = new char[4 + 16];
+		"Name".getChars(0, 4, chars, 0);
+		for(int i = 0; i < 8; ++i) {
+			chars[4 + 2 * i] = HEX[(hmac[i] >> 4) & 0xF];
+			chars[5 + 2 * i] = HEX[hmac[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+}
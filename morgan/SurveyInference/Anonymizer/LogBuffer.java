@@ -0,0 +1,78 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+/**
+ * A fixed-size ring of log lines.  Any thread may add lines; the window drains them in
+ * batches on the event dispatch thread.  When lines come in faster than they are drained, the
+ * oldest are dropped and counted instead of growing without bound.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class LogBuffer {
+
+	private final String[] lines;
+	private int first = 0;
+	private int count = 0;
+	private long dropped = 0;
+
+	LogBuffer(int capacity) {
+		lines = new String[capacity];
+	}
+
+	synchronized void add(String line) {
+		if(count == lines.length) {
+			lines[first] = null;
+			first = (first + 1) % lines.length;
+			--count;
+			++dropped;
+		}
+		lines[(first + count) % lines.length] = line;
+		++count;
+	}
+
+	/**
+	 * Move every waiting line to out, each preceded by a newline, noting any that were dropped.
+	 * 
+	 * @param out - receives the lines
+	 * @return how many lines were moved, not counting the note
+	 */
+	synchronized int drainTo(StringBuilder out) {
+		if(dropped > 0) {
+			out.append("\n... ").append(dropped).append(" lines not shown ...");
+			dropped = 0;
+		}
+		int drained = count;
+		for(int i = 0; i < drained; ++i) {
+			int slot = (first + i) % lines.length;
+			out.append('\n').append(lines[slot]);
+			lines[slot] = null;
+		}
+		first = 0;
+		count = 0;
+		return drained;
+	}
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+/**
+ * A candidate name prepared for repeated distance computations against approved names.
+ *
+ * Names shorter than 64 characters (nearly all partner names, roles and counties) use the
+ * bit-parallel edit distance of Myers (1999), in the formulation of Hyyro (2001): one column
+ * of the DP matrix is held as two 64-bit vectors of +1/-1 vertical differences, so each
+ * character of the other string costs a handful of word operations instead of a full row.
+ * The per-character bitmasks are computed once, when the pattern is made, and reused for
+ * every comparison.  Longer names fall back to CandidateIdentifier.LevenshteinDistance.
+ *
+ * Before any edit distance is computed, each comparison goes through a cascade of cheap lower
+ * bounds on it: the difference in length, the character-histogram (bag) distance, and the
+ * bigram count filter (each edit can destroy at most two bigrams).  Only pairs that no filter
+ * can rule out get the full computation.  Each stage counts what it rejected in statistics.
+ * The histogram and bigram stages each cost about as much as the bit-parallel distance itself,
+ * so they only run in front of the DP, for names too long to be bit-parallel.
+ *
+ * Both distances match CandidateIdentifier.LevenshteinDistance(name, other, freeLeadingSkip)
+ * exactly.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class NamePattern {
+
+	/**
+	 * Names at least this long fall back to the DP
+	 */
+	static final int MAX_BIT_PARALLEL_LENGTH = 63;
+
+	/**
+	 * The name this pattern was built from
+	 */
+	final String name;
+
+	/**
+	 * True if the name fits in a machine word
+	 */
+	final boolean bitParallel;
+
+	/**
+	 * For each character, the positions of the name at which it occurs.  ASCII characters are
+	 * looked up directly, anything else is kept in a short list.
+	 */
+	private long[] asciiMasks;
+	private char[] otherChars;
+	private long[] otherMasks;
+	private int otherCount;
+
+	/**
+	 * The bit of the last character of the name
+	 */
+	private long lastBit;
+
+	/**
+	 * Characters and bigrams of the name, counted in buckets.  Sharing a bucket can only make
+	 * two strings look more alike, so the lower bounds stay valid.
+	 */
+	private static final int CHAR_BUCKETS = 128;
+	private static final int BIGRAM_BUCKETS = 256;
+	private int[] charCounts = new int[CHAR_BUCKETS];
+	private int[] bigramCounts = new int[BIGRAM_BUCKETS];
+
+	/**
+	 * What the filter cascade did for this pattern
+	 */
+	DistanceStatistics statistics = new DistanceStatistics();
+
+	/**
+	 * Scratch counts for the filters, one pair per thread, always left zeroed
+	 */
+	private static final ThreadLocal<int[][]> filterCounts = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] {new int[CHAR_BUCKETS], new int[BIGRAM_BUCKETS]};
+		}
+	};
+
+	private static int bigramBucket(char first, char second) {
+		return (first * 31 + second) & (BIGRAM_BUCKETS - 1);
+	}
+
+	NamePattern(String theName) {
+		name = theName;
+		int length = name.length();
+		for(int i = 0; i < length; ++i) {
+			++charCounts[name.charAt(i) & (CHAR_BUCKETS - 1)];
+			if(i > 0) {
+				++bigramCounts[bigramBucket(name.charAt(i - 1), name.charAt(i))];
+			}
+		}
+		bitParallel = length <= MAX_BIT_PARALLEL_LENGTH;
+		if(bitParallel) {
+			asciiMasks = new long[128];
+			otherChars = new char[0];
+			otherMasks = new long[0];
+			otherCount = 0;
+			for(int i = 0; i < length; ++i) {
+				char c = name.charAt(i);
+				long bit = 1L << i;
+				if(c < 128) {
+					asciiMasks[c] |= bit;
+				}
+				else {
+					addOtherMask(c, bit);
+				}
+			}
+			lastBit = length == 0 ? 0 : 1L << (length - 1);
+		}
+	}
+
+	private void addOtherMask(char c, long bit) {
+		for(int i = 0; i < otherCount; ++i) {
+			if(otherChars[i] == c) {
+				otherMasks[i] |= bit;
+				return;
+			}
+		}
+		if(otherCount == otherChars.length) {
+			char[] newChars = new char[otherCount + 4];
+			long[] newMasks = new long[otherCount + 4];
+			System.arraycopy(otherChars, 0, newChars, 0, otherCount);
+			System.arraycopy(otherMasks, 0, newMasks, 0, otherCount);
+			otherChars = newChars;
+			otherMasks = newMasks;
+		}
+		otherChars[otherCount] = c;
+		otherMasks[otherCount] = bit;
+		++otherCount;
+	}
+
+	private long getMask(char c) {
+		if(c < 128) {
+			return asciiMasks[c];
+		}
+		for(int i = 0; i < otherCount; ++i) {
+			if(otherChars[i] == c) {
+				return otherMasks[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The distance from this name to another, bounded by maxDistance.
+	 *
+	 * @param other - the string to compare against, typically an approved name
+	 * @param maxDistance - the largest distance we are interested in
+	 * @param freeLeadingSkip - true for the cleaning distance, false for the textbook (metric) distance
+	 * @return the distance if it is maxDistance or less, otherwise maxDistance + 1
+	 */
+	int distance(String other, int maxDistance, boolean freeLeadingSkip) {
+		int length = name.length();
+		int otherLength = other.length();
+		int limit = maxDistance + 1;
+		boolean skip = freeLeadingSkip && otherLength > 0;
+
+		// Every edit changes the length by at most one
+		int lengthGap = Math.abs(length - otherLength);
+		if(skip) {
+			lengthGap = Math.min(lengthGap, Math.abs(length - (otherLength - 1)));
+		}
+		if(lengthGap > maxDistance) {
+			++statistics.lengthRejected;
+			return limit;
+		}
+
+		// The histogram filters only pay for themselves in front of the DP, and no lower bound
+		// can exceed the longer length
+		if(!bitParallel && maxDistance < Math.max(length, otherLength)) {
+			int[][] counts = filterCounts.get();
+
+			// Characters the two strings have in common; every other character needs an edit
+			int[] seenChars = counts[0];
+			int matched = 0;
+			for(int j = 0; j < otherLength; ++j) {
+				int bucket = other.charAt(j) & (CHAR_BUCKETS - 1);
+				if(seenChars[bucket] < charCounts[bucket]) {
+					++matched;
+				}
+				++seenChars[bucket];
+			}
+			int bagDistance = Math.max(length - matched, otherLength - matched);
+			if(skip) {
+				int first = other.charAt(0) & (CHAR_BUCKETS - 1);
+				int matchedWithoutFirst = matched - (seenChars[first] <= charCounts[first] ? 1 : 0);
+				bagDistance = Math.min(bagDistance, Math.max(length - matchedWithoutFirst, otherLength - 1 - matchedWithoutFirst));
+			}
+			for(int j = 0; j < otherLength; ++j) {
+				seenChars[other.charAt(j) & (CHAR_BUCKETS - 1)] = 0;
+			}
+			if(bagDistance > maxDistance) {
+				++statistics.bagRejected;
+				return limit;
+			}
+
+			// Bigrams in common; each edit destroys at most two of the longer string's bigrams
+			int[] seenBigrams = counts[1];
+			int common = 0;
+			for(int j = 1; j < otherLength; ++j) {
+				int bucket = bigramBucket(other.charAt(j - 1), other.charAt(j));
+				if(seenBigrams[bucket] < bigramCounts[bucket]) {
+					++common;
+				}
+				++seenBigrams[bucket];
+			}
+			for(int j = 1; j < otherLength; ++j) {
+				seenBigrams[bigramBucket(other.charAt(j - 1), other.charAt(j))] = 0;
+			}
+			// Dropping the first character only removes bigrams, so common still bounds it
+			int longest = skip ? Math.min(Math.max(length, otherLength), Math.max(length, otherLength - 1)) : Math.max(length, otherLength);
+			int bigramBound = (longest - 1 - common + 1) / 2;
+			if(bigramBound > maxDistance) {
+				++statistics.qgramRejected;
+				return limit;
+			}
+		}
+
+		++statistics.computed;
+		return editDistance(other, maxDistance, freeLeadingSkip);
+	}
+
+	/**
+	 * The edit distance itself, bit-parallel if the name fits in a machine word.
+	 */
+	private int editDistance(String other, int maxDistance, boolean freeLeadingSkip) {
+		if(!bitParallel) {
+			return CandidateIdentifier.LevenshteinDistance(name, other, maxDistance, freeLeadingSkip);
+		}
+
+		int length = name.length();
+		int otherLength = other.length();
+		int limit = maxDistance + 1;
+		int skip = (freeLeadingSkip && otherLength > 0) ? 1 : 0;
+
+		// Every edit changes the length by at most one
+		int lengthGap = Math.abs(length - otherLength);
+		if(skip == 1) {
+			lengthGap = Math.min(lengthGap, Math.abs(length - (otherLength - 1)));
+		}
+		if(lengthGap > maxDistance) {
+			return limit;
+		}
+		if(length == 0) {
+			return Math.min(otherLength - skip, limit);
+		}
+
+		// Vertical differences of the current column, all +1 against an empty string
+		long positive = -1L;
+		long negative = 0L;
+		int score = length;
+
+		for(int j = 0; j < otherLength; ++j) {
+			long equal = getMask(other.charAt(j));
+			long verticalX = equal | negative;
+			long horizontalX = (((equal & positive) + positive) ^ positive) | equal;
+			long horizontalPositive = negative | ~(horizontalX | positive);
+			long horizontalNegative = positive & horizontalX;
+
+			if((horizontalPositive & lastBit) != 0) {
+				++score;
+			}
+			else if((horizontalNegative & lastBit) != 0) {
+				--score;
+			}
+
+			// The empty prefix of the name costs one more per character, except that
+			// the cleaning distance lets the first character go for free
+			horizontalPositive <<= 1;
+			if(j >= skip) {
+				horizontalPositive |= 1L;
+			}
+			horizontalNegative <<= 1;
+
+			positive = horizontalNegative | ~(verticalX | horizontalPositive);
+			negative = horizontalPositive & verticalX;
+
+			// The score can fall by at most one per remaining character
+			if(score - (otherLength - j - 1) > maxDistance) {
+				return limit;
+			}
+		}
+
+		return Math.min(score, limit);
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Cleans a sorted list of candidates on several threads, with exactly the result of the
+ * sequential pass in CandidateIdentifier.cleanCandidateIDs.
+ *
+ * Each candidate can only be replaced by a name approved before it, so the candidates are
+ * taken in batches.  Every candidate of a batch is first searched, in parallel, against the
+ * names approved before the batch; nothing is added to the index while this happens.  The
+ * batch is then committed in order on one thread: each candidate is also checked against the
+ * names approved earlier in the same batch (a small index of its own), and only such a name
+ * strictly closer than the one already found can take its place, since the earlier-approved
+ * name wins ties.  Candidates with no match are approved, exactly as they would have been one
+ * at a time.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class ParallelCleaner {
+
+	/**
+	 * Candidates searched per thread in each batch.  Larger batches keep the threads busier but
+	 * leave more of the work to the in-batch check, which runs on one thread.
+	 */
+	static final int CANDIDATES_PER_THREAD = 64;
+
+	/**
+	 * Candidates a single search task handles without splitting further
+	 */
+	static final int SEARCH_GRAIN = 8;
+
+	/**
+	 * The pools shared by every cleaning pass, one for each number of threads, so names and roles
+	 * can be cleaned at the same time.  A pool is never shut down, as Anonymizers with different
+	 * settings may be using them at once; its idle threads are let go by the pool itself.
+	 */
+	private static final HashMap<Integer, ForkJoinPool> pools = new HashMap<Integer, ForkJoinPool>();
+
+	static synchronized ForkJoinPool getPool(int threads) {
+		ForkJoinPool pool = pools.get(threads);
+		if(pool == null) {
+			pool = new ForkJoinPool(threads);
+			pools.put(threads, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * Clean the candidates, which must already be sorted shortest first.
+	 * 
+	 * @param engine - the Anonymizer cleaning them, whose settings apply
+	 * @param theRawIDs - the sorted candidates
+	 * @param uniqueIDs - receives every cleaned identifier
+	 * @param approvedNames - the names approved before these candidates; receives the new ones
+	 * @param statistics - receives what the cleaning cost
+	 * @param threads - how many threads to search with
+	 */
+	static void clean(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs,
+			ApprovedNameIndex approvedNames, DistanceStatistics statistics, int threads) {
+		AnonymizerConfig config = engine.getConfig();
+		ForkJoinPool searchPool = getPool(threads);
+		int batchSize = threads * CANDIDATES_PER_THREAD;
+		NamePattern[] patterns = new NamePattern[batchSize];
+		String[] found = new String[batchSize];
+
+		for(int start = 0; start < theRawIDs.size(); start += batchSize) {
+			engine.checkCancelled();
+			int end = Math.min(theRawIDs.size(), start + batchSize);
+			searchPool.invoke(new SearchTask(config, theRawIDs, start, end, approvedNames, patterns, found));
+
+			ApprovedNameIndex batchApproved = CandidateIdentifier.newApprovedNameIndex(config);
+			for(int i = start; i < end; ++i) {
+				CandidateIdentifier candidate = theRawIDs.get(i);
+				NamePattern pattern = patterns[i - start];
+				String bestCandidate = found[i - start];
+				if(pattern != null) {
+					statistics.linearComparisons += approvedNames.size();
+					if(batchApproved.size() > 0) {
+						int limit = config.getDistanceThreshold(candidate.id);
+						if(bestCandidate != null) {
+							limit = pattern.distance(bestCandidate, limit, true) - 1;
+						}
+						if(limit >= 0) {
+							String batchCandidate = batchApproved.findClosest(pattern, limit);
+							if(batchCandidate != null) {
+								bestCandidate = batchCandidate;
+							}
+						}
+					}
+					statistics.add(pattern.statistics);
+					if(bestCandidate != null) {
+						CandidateIdentifier.replacements.increment();
+						if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+							SurveyLog.debug("Original: " + candidate.id + " Best Candidate:" + bestCandidate);
+						}
+					}
+				}
+
+				if(bestCandidate != null) {
+					candidate.cleanedID = bestCandidate;
+				}
+				else {
+					candidate.cleanedID = candidate.id;
+					approvedNames.add(candidate.id);
+					batchApproved.add(candidate.id);
+				}
+
+				if(!uniqueIDs.contains(candidate.cleanedID)) {
+					uniqueIDs.add(candidate.cleanedID);
+				}
+				patterns[i - start] = null;
+				found[i - start] = null;
+			}
+			statistics.insertEvaluations += batchApproved.getInsertEvaluations();
+		}
+	}
+
+	/**
+	 * Searches a slice of a batch against the names approved before the batch.  The pattern and
+	 * the name found for each candidate are left in patterns and found; a candidate that is not
+	 * searched keeps a null pattern.
+	 */
+	static class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		AnonymizerConfig config;
+		List<CandidateIdentifier> candidates;
+		int start;
+		int end;
+		ApprovedNameIndex approvedNames;
+		NamePattern[] patterns;
+		String[] found;
+		int offset;
+
+		SearchTask(AnonymizerConfig theConfig, List<CandidateIdentifier> theCandidates, int theStart, int theEnd,
+				ApprovedNameIndex theApprovedNames, NamePattern[] thePatterns, String[] theFound) {
+			this(theConfig, theCandidates, theStart, theEnd, theApprovedNames, thePatterns, theFound, theStart);
+		}
+
+		private SearchTask(AnonymizerConfig theConfig, List<CandidateIdentifier> theCandidates, int theStart, int theEnd,
+				ApprovedNameIndex theApprovedNames, NamePattern[] thePatterns, String[] theFound, int theOffset) {
+			config = theConfig;
+			candidates = theCandidates;
+			start = theStart;
+			end = theEnd;
+			approvedNames = theApprovedNames;
+			patterns = thePatterns;
+			found = theFound;
+			offset = theOffset;
+		}
+
+		@Override
+		protected void compute() {
+			if(end - start > SEARCH_GRAIN) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new SearchTask(config, candidates, start, middle, approvedNames, patterns, found, offset),
+						new SearchTask(config, candidates, middle, end, approvedNames, patterns, found, offset));
+				return;
+			}
+			for(int i = start; i < end; ++i) {
+				CandidateIdentifier candidate = candidates.get(i);
+				// Skip the cleaning process if you're unknown
+				if(candidate.id.equals(Anonymizer.UNKNOWN_ACTOR)) {
+					continue;
+				}
+				NamePattern pattern = new NamePattern(candidate.id);
+				patterns[i - offset] = pattern;
+				if(approvedNames.size() > 0) {
+					found[i - offset] = approvedNames.findClosest(pattern, config.getDistanceThreshold(candidate.id));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes participants out on several threads, with exactly the output of a RowEncoder.
+ *
+ * Rows are gathered into chunks of CHUNK_ROWS, and each chunk is formatted into bytes on a
+ * pool of threads, each with a RowEncoder of its own.  The chunks' futures go, in order, into
+ * a bounded queue, from which a single writer thread takes each one as it is done and writes
+ * it out; the order of the output is the order of the queue, whichever chunk finishes first.
+ * When the queue is full, writeRow waits, so however fast the rows come no more than
+ * QUEUED_CHUNKS_PER_THREAD chunks per thread are ever held in memory.
+ *
+ * Throughput is measured on the writer thread, from taking a chunk off the queue to having
+ * written it, so it leaves out time spent waiting for rows to be produced.
+ *
+ * If the output can't be written, the writer thread keeps emptying the queue, so writeRow
+ * never waits forever, and the failure is thrown from the next writeRow or from close.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class ParallelRowWriter implements RowWriter {
+
+	/**
+	 * Rows formatted together by one task
+	 */
+	static final int CHUNK_ROWS = 512;
+
+	/**
+	 * Chunks that may wait to be written, per formatting thread
+	 */
+	static final int QUEUED_CHUNKS_PER_THREAD = 2;
+
+	/**
+	 * Marks the end of the queue; it is never run
+	 */
+	private static final Future<byte[]> END = new FutureTask<byte[]>(new Callable<byte[]>() {
+		public byte[] call() {
+			return null;
+		}
+	});
+
+	private final OutputStream out;
+	private final List<String> columns;
+	private final String delimiter;
+
+	private final ExecutorService formatters;
+	private final BlockingQueue<Future<byte[]>> queue;
+	private final Thread writerThread;
+
+	/**
+	 * Each formatting thread's encoder, and the buffer it encodes into
+	 */
+	private final ThreadLocal<ChunkEncoder> encoders = new ThreadLocal<ChunkEncoder>() {
+		@Override
+		protected ChunkEncoder initialValue() {
+			return new ChunkEncoder(columns, delimiter);
+		}
+	};
+
+	private ArrayList<Map<String, String>> chunk = new ArrayList<Map<String, String>>(CHUNK_ROWS);
+
+	private volatile long bytesWritten = 0;
+	private volatile IOException failure = null;
+	private boolean closed = false;
+
+	/**
+	 * Time the writer thread spent on chunks, not counting waits for the next chunk to be queued
+	 */
+	private volatile long nanos = 0;
+
+	/**
+	 * @param theOut - the stream to write to; it is written from the writer thread only
+	 * @param theColumns - the columns to write, in order
+	 * @param theDelimiter - written between columns
+	 * @param threads - how many threads to format rows on
+	 */
+	ParallelRowWriter(OutputStream theOut, List<String> theColumns, String theDelimiter, int threads) {
+		out = theOut;
+		columns = new ArrayList<String>(theColumns);
+		delimiter = theDelimiter;
+		queue = new ArrayBlockingQueue<Future<byte[]>>(threads * QUEUED_CHUNKS_PER_THREAD);
+		formatters = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			int count = 0;
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Row formatting " + ++count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		writerThread = new Thread(new Runnable() {
+			public void run() {
+				writeChunks();
+			}
+		}, "Row writing");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public void writeHeader() throws IOException {
+		submit(null);
+	}
+
+	public void writeRow(Map<String, String> row) throws IOException {
+		chunk.add(row);
+		if(chunk.size() == CHUNK_ROWS) {
+			submit(chunk);
+			chunk = new ArrayList<Map<String, String>>(CHUNK_ROWS);
+		}
+	}
+
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if(!chunk.isEmpty() && failure == null) {
+				submit(chunk);
+			}
+			queue.put(END);
+			writerThread.join();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while writing rows");
+		} finally {
+			formatters.shutdownNow();
+			out.close();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public double getMegabytesPerSecond() {
+		if(nanos == 0) {
+			return 0;
+		}
+		return (bytesWritten / 1048576.0) / (nanos / 1e9);
+	}
+
+	/**
+	 * Format the rows on the pool and queue the result behind the chunks before it
+	 * 
+	 * @param rows - the rows, or null for the header
+	 */
+	private void submit(final List<Map<String, String>> rows) throws IOException {
+		if(failure != null) {
+			throw failure;
+		}
+		Future<byte[]> formatted = formatters.submit(new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				return encoders.get().encode(rows);
+			}
+		});
+		try {
+			queue.put(formatted);
+		} catch (InterruptedException e) {
+			formatted.cancel(false);
+			throw new InterruptedIOException("Interrupted while writing rows");
+		}
+	}
+
+	/**
+	 * The writer thread: write each chunk out in the order it was queued
+	 */
+	private void writeChunks() {
+		while(true) {
+			Future<byte[]> formatted;
+			try {
+				formatted = queue.take();
+			} catch (InterruptedException e) {
+				failure = new InterruptedIOException("Interrupted while writing rows");
+				return;
+			}
+			if(formatted == END) {
+				break;
+			}
+			if(failure != null) {
+				// Keep emptying the queue so nothing waits on it
+				formatted.cancel(false);
+				continue;
+			}
+			long start = System.nanoTime();
+			try {
+				byte[] bytes = formatted.get();
+				out.write(bytes);
+				bytesWritten += bytes.length;
+				nanos += System.nanoTime() - start;
+			} catch (ExecutionException e) {
+				failure = e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+			} catch (IOException e) {
+				failure = e;
+			} catch (InterruptedException e) {
+				failure = new InterruptedIOException("Interrupted while writing rows");
+			}
+		}
+		try {
+			out.flush();
+		} catch (IOException e) {
+			if(failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * A RowEncoder writing into a buffer it reuses for every chunk
+	 */
+	static class ChunkEncoder {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+		RowEncoder encoder;
+
+		ChunkEncoder(List<String> columns, String delimiter) {
+			encoder = new RowEncoder(buffer, columns, delimiter);
+		}
+
+		byte[] encode(List<Map<String, String>> rows) throws IOException {
+			buffer.reset();
+			if(rows == null) {
+				encoder.writeHeader();
+			}
+			else {
+				for(Map<String, String> row : rows) {
+					encoder.writeRow(row);
+				}
+			}
+			encoder.flush();
+			return buffer.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+/**
+ * Phonetic codes for names, used by BlockingIndex to file names that sound alike together.
+ *
+ * Only the letters of a name count; spaces, digits and punctuation are skipped, so "Mc Donald"
+ * and "McDonald" get the same codes.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class PhoneticCodes {
+
+	/**
+	 * Soundex digits for A to Z; 0 for letters that are dropped
+	 */
+	private static final String SOUNDEX_DIGITS = "01230120022455012623010202";
+
+	private static final int METAPHONE_LENGTH = 4;
+
+	/**
+	 * American Soundex: the first letter, then up to three digits for the consonant sounds that
+	 * follow, padded with zeros.  H and W don't separate letters with the same digit.
+	 * 
+	 * @param name - a name
+	 * @return its code, or "" if it has no letters
+	 */
+	static String soundex(String name) {
+		String letters = letters(name);
+		if(letters.length() == 0) {
+			return "";
+		}
+		StringBuilder code = new StringBuilder(4);
+		code.append(letters.charAt(0));
+		char last = SOUNDEX_DIGITS.charAt(letters.charAt(0) - 'A');
+		for(int i = 1; i < letters.length() && code.length() < 4; ++i) {
+			char c = letters.charAt(i);
+			char digit = SOUNDEX_DIGITS.charAt(c - 'A');
+			if(digit != '0' && digit != last) {
+				code.append(digit);
+			}
+			if(c != 'H' && c != 'W') {
+				last = digit;
+			}
+		}
+		while(code.length() < 4) {
+			code.append('0');
+		}
+		return code.toString();
+	}
+
+	/**
+	 * A simplified Double Metaphone: the primary and alternate pronunciations of the name, each
+	 * coded in up to four consonant sounds.  It covers the rules that matter most for the names
+	 * in our surveys (silent initial letters, CH, GH, PH, SH, TH, soft C and G, and the common
+	 * Germanic and Spanish alternates) and leaves out the rarer cases of the full algorithm.
+	 * 
+	 * @param name - a name
+	 * @return the primary and the alternate code, equal if there is no alternate
+	 */
+	static String[] doubleMetaphone(String name) {
+		String word = letters(name);
+		StringBuilder primary = new StringBuilder(METAPHONE_LENGTH);
+		StringBuilder alternate = new StringBuilder(METAPHONE_LENGTH);
+		int length = word.length();
+		int i = 0;
+
+		// Silent first letters
+		if(word.startsWith("GN") || word.startsWith("KN") || word.startsWith("PN")
+				|| word.startsWith("WR") || word.startsWith("PS")) {
+			i = 1;
+		}
+		if(length > 0 && word.charAt(0) == 'X') {
+			add(primary, alternate, "S", "S");
+			i = 1;
+		}
+
+		while(i < length && (primary.length() < METAPHONE_LENGTH || alternate.length() < METAPHONE_LENGTH)) {
+			char c = word.charAt(i);
+			// Doubled letters sound once, except CC, which is handled below
+			if(i > 0 && c == word.charAt(i - 1) && c != 'C') {
+				++i;
+				continue;
+			}
+			switch(c) {
+			case 'A': case 'E': case 'I': case 'O': case 'U': case 'Y':
+				if(i == 0) {
+					add(primary, alternate, "A", "A");
+				}
+				++i;
+				break;
+			case 'B':
+				add(primary, alternate, "P", "P");
+				++i;
+				break;
+			case 'C':
+				if(at(word, i, "CH")) {
+					add(primary, alternate, "X", "K");
+					i += 2;
+				}
+				else if(at(word, i, "CI") || at(word, i, "CE") || at(word, i, "CY")) {
+					add(primary, alternate, "S", "S");
+					i += 2;
+				}
+				else if(at(word, i, "CK") || at(word, i, "CQ") || at(word, i, "CC")) {
+					add(primary, alternate, "K", "K");
+					i += 2;
+				}
+				else {
+					add(primary, alternate, "K", "K");
+					++i;
+				}
+				break;
+			case 'D':
+				if(at(word, i, "DG") && isSoftVowel(word, i + 2)) {
+					add(primary, alternate, "J", "J");
+					i += 3;
+				}
+				else {
+					add(primary, alternate, "T", "T");
+					i += at(word, i, "DT") ? 2 : 1;
+				}
+				break;
+			case 'F': case 'V':
+				add(primary, alternate, "F", "F");
+				++i;
+				break;
+			case 'G':
+				if(at(word, i, "GH")) {
+					// Sounded at the start (Ghent), silent or F elsewhere (Knight, Laughlin)
+					if(i == 0) {
+						add(primary, alternate, "K", "K");
+					}
+					else if(i + 2 >= length || !isVowel(word, i + 2)) {
+						add(primary, alternate, "", "F");
+					}
+					i += 2;
+				}
+				else if(at(word, i, "GN")) {
+					add(primary, alternate, "N", "KN");
+					i += 2;
+				}
+				else if(isSoftVowel(word, i + 1)) {
+					add(primary, alternate, "J", "K");
+					i += 2;
+				}
+				else {
+					add(primary, alternate, "K", "K");
+					++i;
+				}
+				break;
+			case 'H':
+				// Only sounded before a vowel, and not after one
+				if(isVowel(word, i + 1) && (i == 0 || isVowel(word, i - 1))) {
+					add(primary, alternate, "H", "H");
+				}
+				++i;
+				break;
+			case 'J':
+				// Jose, Juan
+				add(primary, alternate, "J", "H");
+				++i;
+				break;
+			case 'K':
+				if(i == 0 || word.charAt(i - 1) != 'C') {
+					add(primary, alternate, "K", "K");
+				}
+				++i;
+				break;
+			case 'L': case 'M': case 'N': case 'R':
+				add(primary, alternate, String.valueOf(c), String.valueOf(c));
+				++i;
+				break;
+			case 'P':
+				if(at(word, i, "PH")) {
+					add(primary, alternate, "F", "F");
+					i += 2;
+				}
+				else {
+					add(primary, alternate, "P", "P");
+					++i;
+				}
+				break;
+			case 'Q':
+				add(primary, alternate, "K", "K");
+				++i;
+				break;
+			case 'S':
+				if(at(word, i, "SCH")) {
+					add(primary, alternate, "SK", "X");
+					i += 3;
+				}
+				else if(at(word, i, "SH")) {
+					add(primary, alternate, "X", "X");
+					i += 2;
+				}
+				else if(at(word, i, "SIO") || at(word, i, "SIA")) {
+					add(primary, alternate, "X", "S");
+					i += 3;
+				}
+				else {
+					add(primary, alternate, "S", "S");
+					++i;
+				}
+				break;
+			case 'T':
+				if(at(word, i, "TH")) {
+					add(primary, alternate, "0", "T");
+					i += 2;
+				}
+				else if(at(word, i, "TIO") || at(word, i, "TIA")) {
+					add(primary, alternate, "X", "X");
+					i += 3;
+				}
+				else {
+					add(primary, alternate, "T", "T");
+					++i;
+				}
+				break;
+			case 'W':
+				// Wagner is also said Vagner; otherwise W is only sounded before a vowel
+				if(i == 0 && isVowel(word, 1)) {
+					add(primary, alternate, "A", "F");
+				}
+				++i;
+				break;
+			case 'X':
+				add(primary, alternate, "KS", "KS");
+				++i;
+				break;
+			case 'Z':
+				add(primary, alternate, "S", "TS");
+				++i;
+				break;
+			default:
+				++i;
+			}
+		}
+		return new String[] {truncate(primary), truncate(alternate)};
+	}
+
+	/**
+	 * @return the letters of the name, upper case, A to Z only
+	 */
+	private static String letters(String name) {
+		StringBuilder letters = new StringBuilder(name.length());
+		for(int i = 0; i < name.length(); ++i) {
+			char c = Character.toUpperCase(name.charAt(i));
+			if(c >= 'A' && c <= 'Z') {
+				letters.append(c);
+			}
+		}
+		return letters.toString();
+	}
+
+	private static void add(StringBuilder primary, StringBuilder alternate, String primarySound, String alternateSound) {
+		if(primary.length() < METAPHONE_LENGTH) {
+			primary.append(primarySound);
+		}
+		if(alternate.length() < METAPHONE_LENGTH) {
+			alternate.append(alternateSound);
+		}
+	}
+
+	private static String truncate(StringBuilder code) {
+		return code.length() > METAPHONE_LENGTH ? code.substring(0, METAPHONE_LENGTH) : code.toString();
+	}
+
+	private static boolean at(String word, int i, String text) {
+		return word.startsWith(text, i);
+	}
+
+	private static boolean isVowel(String word, int i) {
+		return i >= 0 && i < word.length() && "AEIOUY".indexOf(word.charAt(i)) >= 0;
+	}
+
+	private static boolean isSoftVowel(String word, int i) {
+		return i < word.length() && "EIY".indexOf(word.charAt(i)) >= 0;
+	}
+
+}
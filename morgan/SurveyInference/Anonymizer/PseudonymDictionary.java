@@ -0,0 +1,141 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * One name dictionary shared by every file of a batch (see AnonymizerBatch), so a cleaned name
+ * gets the same pseudonym in every file, whichever Anonymizer gets to it first.  Each file's
+ * names are looked up in one go, under the dictionary's lock.
+ *
+ * If the configuration names a pseudonymRegistry the dictionary is the registry, opened once
+ * for the whole batch, and earlier waves' pseudonyms are kept as usual; otherwise it lives for
+ * the batch only.  New names are numbered in the order the files look them up.  In a batch
+ * each file does so in its turn to commit its cleaning (see SharedCleaning), in the order the
+ * files were given, so the same batch always gives the same pseudonyms; Anonymizers that
+ * share only the dictionary number them in whatever order they finish cleaning.  A pseudonymKey gives every
+ * name the same pseudonym whatever the order, and needs no dictionary.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class PseudonymDictionary {
+
+	/**
+	 * The registry behind the dictionary, or null
+	 */
+	private final PseudonymRegistry registry;
+
+	/**
+	 * Without a registry, the number of each name seen so far
+	 */
+	private final HashMap<String, Integer> numbers = new HashMap<String, Integer>();
+
+	/**
+	 * @param theRegistry - the registry to keep the names in, or null to keep them in memory
+	 */
+	private PseudonymDictionary(PseudonymRegistry theRegistry) {
+		registry = theRegistry;
+	}
+
+	/**
+	 * @param config - the settings of the batch
+	 * @return a dictionary backed by the configuration's pseudonym registry, if it names one
+	 * @throws IOException - if the registry can't be opened
+	 */
+	public static PseudonymDictionary open(AnonymizerConfig config) throws IOException {
+		if(config.pseudonymRegistry.isEmpty()) {
+			return new PseudonymDictionary(null);
+		}
+		return new PseudonymDictionary(PseudonymRegistry.open(new File(config.pseudonymRegistry)));
+	}
+
+	/**
+	 * Give each name its pseudonym, numbering those the dictionary hasn't seen, and skipping
+	 * the unknown actor
+	 * 
+	 * @param names - the cleaned names of one file
+	 * @param listener - told of each pseudonym
+	 * @return anonymous names, keyed by cleaned name
+	 * @throws IOException - if the registry can't be read or written
+	 */
+	synchronized HashMap<String, String> assign(Collection<String> names, AnonymizerListener listener) throws IOException {
+		HashMap<String, String> anonymousNames = new HashMap<String, String>();
+		if(registry != null) {
+			registry.ensureCapacity(names.size());
+		}
+		for(String name : names) {
+			// Skip the Unknown Actor
+			if(name.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				continue;
+			}
+			int number;
+			if(registry != null) {
+				int known = registry.size();
+				number = registry.getOrAssign(name);
+				if(registry.size() == known) {
+					Anonymizer.pseudonymsReused.increment();
+				}
+				else {
+					Anonymizer.pseudonymsCreated.increment();
+				}
+			}
+			else {
+				Integer found = numbers.get(name);
+				if(found == null) {
+					found = numbers.size() + 1;
+					numbers.put(name, found);
+				}
+				number = found;
+			}
+			String anonName = "Name" + number;
+			listener.log("\t" + name + ":" + anonName);
+			anonymousNames.put(name, anonName);
+		}
+		return anonymousNames;
+	}
+
+	/**
+	 * @return how many names the dictionary holds
+	 */
+	public synchronized int size() {
+		return registry != null ? registry.size() : numbers.size();
+	}
+
+	/**
+	 * Close the registry behind the dictionary, if any, recording the new names for good
+	 * 
+	 * @throws IOException - if the registry can't be written
+	 */
+	public synchronized void close() throws IOException {
+		if(registry != null) {
+			registry.close();
+		}
+	}
+
+}
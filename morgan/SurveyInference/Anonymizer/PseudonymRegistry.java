@@ -0,0 +1,412 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+
+/**
+ * The pseudonym given to every cleaned name in earlier runs, kept on disk so each new survey
+ * wave gives a returning person the same pseudonym as before.
+ *
+ * The registry is two files next to each other.  The .dat file is append-only, one record per
+ * name: its pseudonym number, then the name in UTF-8, preceded by its length.  The .idx file
+ * is an open-addressing hash table, memory-mapped, with one slot per name: a 64-bit hash of
+ * the name and the offset of its record.  A lookup probes the mapped table and reads the one
+ * record it points to, to make sure the name really matches, so neither file is ever read
+ * onto the heap and a run only touches the names it contains.  Names the registry hasn't seen
+ * are appended and given the next pseudonym number.
+ *
+ * When the table gets half full the .idx file is grown to twice the size, in place, and the
+ * table is refilled from the .dat file, read a block at a time: every slot can be worked out
+ * again from the records.  The header is marked while this is going on, so if a run stops
+ * part way through, the next one to open the registry refills the table before using it.
+ * Call ensureCapacity with the number of names about to be looked up to do this at most once.
+ *
+ * Only one run at a time may have a registry open: opening locks the .dat file until the
+ * registry is closed, and a second run is refused rather than left to damage the files.
+ * The registry is not thread-safe.  It must be closed to record the new names for good.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class PseudonymRegistry {
+
+	private static final int MAGIC = 0x50534E59;
+	private static final int VERSION = 1;
+
+	/**
+	 * Header: magic, version, slot count, name count, next pseudonym number, whether the table
+	 * is being refilled, data length
+	 */
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 16;
+	private static final int MIN_SLOTS = 1024;
+
+	/**
+	 * A mapped buffer can't exceed 2GB, which limits the table to this many slots
+	 */
+	private static final int MAX_SLOTS = 1 << 26;
+
+	/**
+	 * How much of the .dat file is read at a time when refilling the table
+	 */
+	private static final int REFILL_BLOCK = 1 << 16;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private RandomAccessFile indexFile;
+	private RandomAccessFile dataFile;
+	private FileChannel dataChannel;
+	private FileLock lock;
+	private MappedByteBuffer index;
+
+	private int slotCount;
+	private int size;
+	private int nextNumber;
+	private long dataLength;
+
+	/**
+	 * Scratch space for reading records back
+	 */
+	private ByteBuffer recordBuffer = ByteBuffer.allocate(256);
+
+	/**
+	 * Open a registry, creating it if it doesn't exist
+	 * 
+	 * @param base - the registry's path, without the .idx and .dat extensions
+	 * @return the open registry
+	 * @throws IOException - if the files can't be opened, aren't a registry, or another run has
+	 * them open
+	 */
+	static PseudonymRegistry open(File base) throws IOException {
+		return new PseudonymRegistry(new File(base.getPath() + ".idx"), new File(base.getPath() + ".dat"));
+	}
+
+	private PseudonymRegistry(File theIndexFile, File theDataFile) throws IOException {
+		dataFile = new RandomAccessFile(theDataFile, "rw");
+		dataChannel = dataFile.getChannel();
+		try {
+			lock = dataChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if(lock == null) {
+			dataFile.close();
+			throw new IOException("The pseudonym registry " + theDataFile + " is in use by another run");
+		}
+
+		boolean exists = theIndexFile.exists() && theIndexFile.length() > 0;
+		indexFile = new RandomAccessFile(theIndexFile, "rw");
+		if(exists) {
+			MappedByteBuffer header = indexFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				close();
+				throw new IOException(theIndexFile + " is not a pseudonym registry");
+			}
+			slotCount = header.getInt(8);
+			size = header.getInt(12);
+			nextNumber = header.getInt(16);
+			boolean refilling = header.getInt(20) != 0;
+			dataLength = header.getLong(24);
+			if(dataChannel.size() < dataLength) {
+				close();
+				throw new IOException(theDataFile + " is shorter than its index says; the registry is damaged");
+			}
+			// Anything past dataLength was written by a run that never closed the registry
+			dataChannel.truncate(dataLength);
+			mapIndex();
+			if(refilling) {
+				// A run stopped while growing the table
+				refill();
+			}
+		}
+		else {
+			slotCount = MIN_SLOTS;
+			size = 0;
+			nextNumber = 1;
+			dataLength = 0;
+			dataChannel.truncate(0);
+			mapIndex();
+			writeHeader();
+		}
+	}
+
+	private void mapIndex() throws IOException {
+		index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)slotCount * SLOT_SIZE);
+	}
+
+	private void writeHeader() {
+		index.putInt(0, MAGIC);
+		index.putInt(4, VERSION);
+		index.putInt(8, slotCount);
+		index.putInt(12, size);
+		index.putInt(16, nextNumber);
+		index.putLong(24, dataLength);
+	}
+
+	/**
+	 * @return how many names the registry holds
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param name - a cleaned name
+	 * @return its pseudonym number, or 0 if the registry hasn't seen it
+	 * @throws IOException - if the registry can't be read
+	 */
+	int lookup(String name) throws IOException {
+		byte[] bytes = name.getBytes(UTF8);
+		long hash = hash(bytes);
+		int mask = slotCount - 1;
+		for(int slot = (int)hash & mask; ; slot = (slot + 1) & mask) {
+			long slotHash = index.getLong(slotPosition(slot));
+			if(slotHash == 0) {
+				return 0;
+			}
+			if(slotHash == hash) {
+				int number = readNumberIfNameMatches(index.getLong(slotPosition(slot) + 8), bytes);
+				if(number != 0) {
+					return number;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param name - a cleaned name
+	 * @return its pseudonym number, assigning the next one if the registry hasn't seen it
+	 * @throws IOException - if the registry can't be read or written
+	 */
+	int getOrAssign(String name) throws IOException {
+		int number = lookup(name);
+		if(number != 0) {
+			return number;
+		}
+		ensureCapacity(1);
+
+		byte[] bytes = name.getBytes(UTF8);
+		number = nextNumber++;
+		ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+		record.putInt(number).putInt(bytes.length).put(bytes);
+		record.flip();
+		long offset = dataLength;
+		while(record.hasRemaining()) {
+			dataChannel.write(record, offset + record.position());
+		}
+		dataLength += 8 + bytes.length;
+
+		insertSlot(hash(bytes), offset);
+		++size;
+		writeHeader();
+		return number;
+	}
+
+	/**
+	 * Make room for additional names, so the table grows at most once
+	 * 
+	 * @param additional - how many names may be added
+	 * @throws IOException - if the table can't be grown
+	 */
+	void ensureCapacity(int additional) throws IOException {
+		long needed = ((long)size + additional) * 2;
+		if(needed <= slotCount) {
+			return;
+		}
+		int newSlotCount = slotCount;
+		while(newSlotCount < needed) {
+			if(newSlotCount >= MAX_SLOTS) {
+				throw new IOException("The pseudonym registry can't hold more than " + (MAX_SLOTS / 2) + " names");
+			}
+			newSlotCount *= 2;
+		}
+
+		// Mark the header first, so a run that stops part way refills the table when next opened
+		slotCount = newSlotCount;
+		dataChannel.force(true);
+		writeHeader();
+		index.putInt(20, 1);
+		index.force();
+		mapIndex();
+		refill();
+	}
+
+	/**
+	 * Empty the table and insert every record of the .dat file again, then clear the mark in
+	 * the header.  The size and next pseudonym number are worked out again too.
+	 * 
+	 * @throws IOException - if the .dat file can't be read, or is damaged
+	 */
+	private void refill() throws IOException {
+		for(int slot = 0; slot < slotCount; ++slot) {
+			index.putLong(slotPosition(slot), 0);
+			index.putLong(slotPosition(slot) + 8, 0);
+		}
+		size = 0;
+		nextNumber = 1;
+		ByteBuffer block = ByteBuffer.allocate(REFILL_BLOCK);
+		block.limit(0);
+		long blockStart = 0;
+		long offset = 0;
+		while(offset < dataLength) {
+			// Make sure the block holds the whole record at offset
+			int inBlock = (int)(offset - blockStart);
+			if(inBlock + 8 > block.limit() || inBlock + 8 + block.getInt(inBlock + 4) > block.limit()) {
+				blockStart = offset;
+				inBlock = 0;
+				readBlock(block, blockStart);
+				if(block.limit() < 8) {
+					throw new IOException("The pseudonym registry's data ends part way through a record; the registry is damaged");
+				}
+				int recordLength = 8 + block.getInt(4);
+				if(recordLength > block.capacity()) {
+					block = ByteBuffer.allocate(recordLength);
+					readBlock(block, blockStart);
+				}
+				if(recordLength > block.limit()) {
+					throw new IOException("The pseudonym registry's data ends part way through a record; the registry is damaged");
+				}
+			}
+			int number = block.getInt(inBlock);
+			int length = block.getInt(inBlock + 4);
+			long hash = 0xcbf29ce484222325L;
+			for(int i = 0; i < length; ++i) {
+				hash = step(hash, block.get(inBlock + 8 + i));
+			}
+			insertSlot(finish(hash), offset);
+			++size;
+			nextNumber = Math.max(nextNumber, number + 1);
+			offset += 8 + length;
+		}
+		writeHeader();
+		index.putInt(20, 0);
+		index.force();
+	}
+
+	/**
+	 * Fill the block from the .dat file, starting at position, as far as the data goes
+	 */
+	private void readBlock(ByteBuffer block, long position) throws IOException {
+		block.clear();
+		block.limit((int)Math.min(block.capacity(), dataLength - position));
+		while(block.hasRemaining()) {
+			if(dataChannel.read(block, position + block.position()) < 0) {
+				break;
+			}
+		}
+		block.flip();
+	}
+
+	/**
+	 * Write the new names and table out and close the files
+	 * 
+	 * @throws IOException - if the registry can't be written
+	 */
+	void close() throws IOException {
+		if(index != null) {
+			writeHeader();
+			dataChannel.force(true);
+			index.force();
+		}
+		if(lock != null) {
+			lock.release();
+		}
+		dataFile.close();
+		indexFile.close();
+	}
+
+	private void insertSlot(long hash, long offset) {
+		int mask = slotCount - 1;
+		int slot = (int)hash & mask;
+		while(index.getLong(slotPosition(slot)) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		index.putLong(slotPosition(slot) + 8, offset);
+		index.putLong(slotPosition(slot), hash);
+	}
+
+	private static int slotPosition(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	/**
+	 * @return the pseudonym number of the record at offset if its name is bytes, otherwise 0
+	 */
+	private int readNumberIfNameMatches(long offset, byte[] bytes) throws IOException {
+		int recordLength = 8 + bytes.length;
+		if(recordBuffer.capacity() < recordLength) {
+			recordBuffer = ByteBuffer.allocate(Math.max(recordLength, recordBuffer.capacity() * 2));
+		}
+		recordBuffer.clear();
+		recordBuffer.limit(recordLength);
+		while(recordBuffer.hasRemaining()) {
+			if(dataChannel.read(recordBuffer, offset + recordBuffer.position()) < 0) {
+				return 0;
+			}
+		}
+		if(recordBuffer.getInt(4) != bytes.length) {
+			return 0;
+		}
+		for(int i = 0; i < bytes.length; ++i) {
+			if(recordBuffer.get(8 + i) != bytes[i]) {
+				return 0;
+			}
+		}
+		return recordBuffer.getInt(0);
+	}
+
+	/**
+	 * A 64-bit hash of the name; zero marks an empty slot, so it is never returned
+	 */
+	private static long hash(byte[] bytes) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < bytes.length; ++i) {
+			hash = step(hash, bytes[i]);
+		}
+		return finish(hash);
+	}
+
+	private static long step(long hash, byte b) {
+		return (hash ^ (b & 0xff)) * 0x100000001b3L;
+	}
+
+	private static long finish(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == 0 ? 1 : hash;
+	}
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import javax.swing.table.AbstractTableModel;
+
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * The rows of a review tab: each candidate's original and cleaned text, optionally only those
+ * cleaning changed and only those containing a filter text.
+ *
+ * The model holds the candidates in one array and the rows on show as indexes into it, so a
+ * JTable only ever asks for the cells on screen, however many candidates there are.  Filtering
+ * never rebuilds the table, it only replaces the indexes:
+ * 	- typing more of a filter narrows the rows on show rather than searching all candidates
+ *  - a filter of three or more characters only looks at the candidates containing its rarest
+ *    trigram, from an index built the first time a filter is typed
+ *
+ * If cleaning offered suggestions (see cleaningSuggestions) they are shown with their distances,
+ * and a reviewer can clean a candidate to one of them, or back to itself, by editing its
+ * cleaned text; the choices are read from the candidate, without searching the roster again.
+ * The reviews are saved in the cleaning history when the window closes (see
+ * Anonymizer.saveReviews), not after each one.
+ *
+ * The model must only be used on the event dispatch thread.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class ReviewTableModel extends AbstractTableModel {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String[] COLUMNS = {"Original", "Cleaned", "Suggestions"};
+
+	/**
+	 * The Anonymizer that cleaned the candidates, which keeps their cleaning history
+	 */
+	private final Anonymizer engine;
+
+	private final CandidateIdentifier[] candidates;
+
+	/**
+	 * True if the candidates are roles
+	 */
+	private final boolean roles;
+
+	/**
+	 * The candidates on show, in candidate order
+	 */
+	private final int[] rows;
+	private int rowCount;
+
+	private boolean onlyChanged = false;
+	private String filter = "";
+
+	/**
+	 * What the filter is matched against: each candidate's original and cleaned text, in lower
+	 * case, and the candidates containing each trigram of it, in candidate order.  Built on
+	 * first use.
+	 */
+	private String[] searchText;
+	private HashMap<Long, int[]> trigrams;
+
+	/**
+	 * @param theEngine - the Anonymizer that cleaned the candidates
+	 * @param candidateIDs - the candidates to review, shown shortest first
+	 * @param areRoles - true if the candidates are roles
+	 */
+	ReviewTableModel(Anonymizer theEngine, Collection<CandidateIdentifier> candidateIDs, boolean areRoles) {
+		engine = theEngine;
+		roles = areRoles;
+		candidates = candidateIDs.toArray(new CandidateIdentifier[candidateIDs.size()]);
+		Arrays.sort(candidates);
+		rows = new int[candidates.length];
+		applyFilter(false);
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return COLUMNS.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return COLUMNS[column];
+	}
+
+	@Override
+	public Class<?> getColumnClass(int column) {
+		return String.class;
+	}
+
+	public Object getValueAt(int row, int column) {
+		CandidateIdentifier candidate = candidates[rows[row]];
+		if(column == 0) {
+			return candidate.id;
+		}
+		if(column == 1) {
+			return candidate.cleanedID;
+		}
+		if(candidate.suggestions == null) {
+			return "";
+		}
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < candidate.suggestions.length; ++i) {
+			if(i > 0) {
+				text.append(", ");
+			}
+			text.append(candidate.suggestions[i]).append(" (").append(candidate.suggestionDistances[i]).append(')');
+		}
+		return text.toString();
+	}
+
+	@Override
+	public boolean isCellEditable(int row, int column) {
+		return column == 1 && getChoices(row).length > 1;
+	}
+
+	/**
+	 * Clean the candidate on this row to one of its choices
+	 */
+	@Override
+	public void setValueAt(Object value, int row, int column) {
+		CandidateIdentifier candidate = candidates[rows[row]];
+		String cleaned = (String)value;
+		if(column != 1 || cleaned == null || cleaned.equals(candidate.cleanedID) || !Arrays.asList(getChoices(row)).contains(cleaned)) {
+			return;
+		}
+		boolean recorded = engine.acceptReview(candidate, cleaned, roles);
+		SurveyLog.info("Reviewed: " + candidate.id + " is now cleaned to " + cleaned
+				+ (recorded ? ", to be saved in the cleaning history when the window closes" : ""));
+		// The search text has changed
+		searchText = null;
+		trigrams = null;
+		fireTableRowsUpdated(row, row);
+	}
+
+	/**
+	 * @return what the candidate on this row can be cleaned to: its cleaned identifier, its
+	 * suggestions and itself
+	 */
+	String[] getChoices(int row) {
+		CandidateIdentifier candidate = candidates[rows[row]];
+		ArrayList<String> choices = new ArrayList<String>();
+		choices.add(candidate.cleanedID);
+		if(candidate.suggestions != null) {
+			for(String suggestion : candidate.suggestions) {
+				if(!choices.contains(suggestion)) {
+					choices.add(suggestion);
+				}
+			}
+		}
+		if(!choices.contains(candidate.id)) {
+			choices.add(candidate.id);
+		}
+		return choices.toArray(new String[choices.size()]);
+	}
+
+	/**
+	 * @return how many candidates there are, on show or not
+	 */
+	int getCandidateCount() {
+		return candidates.length;
+	}
+
+	/**
+	 * @param changedOnly - true to show only the candidates cleaning changed
+	 */
+	void setOnlyChanged(boolean changedOnly) {
+		if(changedOnly != onlyChanged) {
+			onlyChanged = changedOnly;
+			applyFilter(changedOnly);
+		}
+	}
+
+	/**
+	 * @param text - show only the candidates whose original or cleaned text contains this,
+	 * ignoring case; empty shows them all
+	 */
+	void setFilter(String text) {
+		String query = text.toLowerCase();
+		if(!query.equals(filter)) {
+			// Rows without the old filter can't contain one that extends it
+			boolean narrowing = query.contains(filter);
+			filter = query;
+			applyFilter(narrowing);
+		}
+	}
+
+	/**
+	 * @param narrowing - true if only the rows on show can still match
+	 */
+	private void applyFilter(boolean narrowing) {
+		int[] source = narrowing ? rows : null;
+		int sourceCount = narrowing ? rowCount : candidates.length;
+		if(filter.length() > 0) {
+			buildIndex();
+			if(filter.length() >= 3) {
+				int[] posting = rarestPosting(filter);
+				if(posting.length < sourceCount) {
+					source = posting;
+					sourceCount = posting.length;
+				}
+			}
+		}
+
+		int count = 0;
+		for(int i = 0; i < sourceCount; ++i) {
+			int candidate = source == null ? i : source[i];
+			if(matches(candidate)) {
+				// Never overtakes the source, so the rows on show can be narrowed in place
+				rows[count++] = candidate;
+			}
+		}
+		rowCount = count;
+		fireTableDataChanged();
+	}
+
+	private boolean matches(int candidate) {
+		if(onlyChanged && candidates[candidate].id.equals(candidates[candidate].cleanedID)) {
+			return false;
+		}
+		return filter.length() == 0 || searchText[candidate].contains(filter);
+	}
+
+	/**
+	 * @return the candidates containing the filter's least common trigram
+	 */
+	private int[] rarestPosting(String query) {
+		int[] rarest = null;
+		for(int i = 0; i + 3 <= query.length(); ++i) {
+			int[] posting = trigrams.get(trigram(query, i));
+			if(posting == null) {
+				return new int[0];
+			}
+			if(rarest == null || posting.length < rarest.length) {
+				rarest = posting;
+			}
+		}
+		return rarest;
+	}
+
+	private void buildIndex() {
+		if(searchText != null) {
+			return;
+		}
+		searchText = new String[candidates.length];
+		// Postings keep their length in the first element until they're trimmed
+		HashMap<Long, int[]> postings = new HashMap<Long, int[]>();
+		for(int c = 0; c < candidates.length; ++c) {
+			String text = (candidates[c].id + "\n" + candidates[c].cleanedID).toLowerCase();
+			searchText[c] = text;
+			for(int i = 0; i + 3 <= text.length(); ++i) {
+				Long key = trigram(text, i);
+				int[] posting = postings.get(key);
+				if(posting == null) {
+					posting = new int[4];
+					postings.put(key, posting);
+				}
+				else if(posting[posting[0]] == c) {
+					// Already listed for this candidate
+					continue;
+				}
+				else if(posting[0] + 1 == posting.length) {
+					posting = Arrays.copyOf(posting, posting.length * 2);
+					postings.put(key, posting);
+				}
+				posting[++posting[0]] = c;
+			}
+		}
+		trigrams = new HashMap<Long, int[]>(postings.size() * 2);
+		for(Long key : postings.keySet()) {
+			int[] posting = postings.get(key);
+			trigrams.put(key, Arrays.copyOfRange(posting, 1, posting[0] + 1));
+		}
+	}
+
+	private static Long trigram(String text, int start) {
+		return ((long)text.charAt(start) << 32) | ((long)text.charAt(start + 1) << 16) | text.charAt(start + 2);
+	}
+
+}
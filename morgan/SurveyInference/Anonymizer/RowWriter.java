@@ -0,0 +1,69 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes participants out as delimited lines, in the order of the header.  RowEncoder does
+ * it on the calling thread; ParallelRowWriter formats rows on a pool of threads, with the
+ * same output.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public interface RowWriter {
+
+	/**
+	 * Write the column names as the first line
+	 * @throws IOException - if the output can't be written
+	 */
+	void writeHeader() throws IOException;
+
+	/**
+	 * Write one row; columns the row doesn't have are left empty.  The row must not be changed
+	 * afterwards.
+	 * @param row - the values, keyed by column
+	 * @throws IOException - if the output can't be written
+	 */
+	void writeRow(Map<String, String> row) throws IOException;
+
+	/**
+	 * Write out everything and close the output
+	 * @throws IOException - if the output can't be written
+	 */
+	void close() throws IOException;
+
+	/**
+	 * @return the bytes written so far
+	 */
+	long getBytesWritten();
+
+	/**
+	 * @return the write throughput so far, in megabytes (2^20 bytes) a second
+	 */
+	double getMegabytesPerSecond();
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The cleaning decisions shared by every file of a batch (see AnonymizerBatch), so a name
+ * cleaned in one file is cleaned the same way in the others, and a new spelling of it in a
+ * later file is matched against the names approved in the earlier ones.
+ *
+ * The files enter in the order they were given, at most a fixed number at a time, and each
+ * keeps its place until it has been written, so no more than that many files are in memory.
+ * Each cleans against a snapshot of the decisions made when it began cleaning, alongside the
+ * others, and commits its decisions in its turn, once every file before it has committed or
+ * given up.  If a file committed in the meantime approved a name that one of this file's new
+ * candidates could be cleaned to, or already decided one of them, this file cleans again in
+ * its turn, against every earlier file's decisions, from that candidate on; the decisions
+ * before it were made as they would have been, so they are kept.  Otherwise its snapshot
+ * made no difference, and its decisions are committed as they are.  So the decisions, and the
+ * pseudonyms handed out when they are committed (see Anonymizer.shareCleaning), are the same
+ * from one batch to the next, just as if the files had been run one after the other with a
+ * cleaning history.  A file that fails gives up its turn and its place.
+ *
+ * If the configuration names a cleaningHistory the batch starts from it, and save writes the
+ * batch's decisions back to it.  Cleaning by clusters (cleaningMode cluster) keeps no
+ * history, so each file is then clustered on its own.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class SharedCleaning {
+
+	/**
+	 * The decisions committed so far, for names and for roles
+	 */
+	private final CleaningHistory names;
+	private final CleaningHistory roles;
+
+	/**
+	 * The cleaning history files, or null if none is kept
+	 */
+	private final File namesFile;
+	private final File rolesFile;
+
+	/**
+	 * The settings the decisions are made with
+	 */
+	private final AnonymizerConfig config;
+
+	/**
+	 * Which files have had their turn, or given it up
+	 */
+	private final boolean[] finished;
+
+	/**
+	 * The position of the file whose turn it is
+	 */
+	private int turn = 0;
+
+	/**
+	 * Which files have left, or given up their place before entering
+	 */
+	private final boolean[] left;
+
+	/**
+	 * How many files may be in at once, how many are, and the position of the next to enter
+	 */
+	private final int capacity;
+	private int inside = 0;
+	private int entering = 0;
+
+	private SharedCleaning(AnonymizerConfig theConfig, CleaningHistory theNames, CleaningHistory theRoles, File theNamesFile, File theRolesFile,
+			int files, int theCapacity) {
+		config = theConfig;
+		names = theNames;
+		roles = theRoles;
+		namesFile = theNamesFile;
+		rolesFile = theRolesFile;
+		finished = new boolean[files];
+		left = new boolean[files];
+		capacity = theCapacity;
+	}
+
+	/**
+	 * @param config - the settings of the batch
+	 * @param files - how many files will take turns
+	 * @param capacity - how many files may be read, cleaned and written at once
+	 * @param listener - told if the cleaning history has to be rebuilt
+	 * @return shared decisions, starting from the configuration's cleaning history, if any
+	 * @throws IOException - if the cleaning history exists but can't be read
+	 */
+	public static SharedCleaning open(AnonymizerConfig config, int files, int capacity, AnonymizerListener listener) throws IOException {
+		if(config.cleaningHistory.isEmpty()) {
+			return new SharedCleaning(config, new CleaningHistory(config), new CleaningHistory(config), null, null, files, capacity);
+		}
+		File namesFile = new File(config.cleaningHistory + ".names");
+		File rolesFile = new File(config.cleaningHistory + ".roles");
+		if(config.rebuildCleaningHistory) {
+			listener.log("Rebuilding the cleaning history");
+			return new SharedCleaning(config, new CleaningHistory(config), new CleaningHistory(config), namesFile, rolesFile, files, capacity);
+		}
+		CleaningHistory names = CleaningHistory.load(namesFile, config, listener);
+		CleaningHistory roles = CleaningHistory.load(rolesFile, config, listener);
+		listener.log("Cleaning history: " + names.size() + " names, " + roles.size() + " roles");
+		return new SharedCleaning(config, names, roles, namesFile, rolesFile, files, capacity);
+	}
+
+	/**
+	 * Wait until every file before this one has entered, or given up its place, and there is
+	 * room for this one
+	 * 
+	 * @param position - the file's place in the batch
+	 * @throws InterruptedException - if interrupted while waiting
+	 */
+	public synchronized void enter(int position) throws InterruptedException {
+		while(entering < position || inside >= capacity) {
+			wait();
+		}
+		++inside;
+		++entering;
+		skipLeft();
+		notifyAll();
+	}
+
+	/**
+	 * Leave once the file is written, or give up the place if it hasn't entered.  Leaving twice
+	 * does nothing.
+	 * 
+	 * @param position - the file's place in the batch
+	 */
+	public synchronized void leave(int position) {
+		if(left[position]) {
+			return;
+		}
+		left[position] = true;
+		if(position < entering) {
+			--inside;
+		}
+		skipLeft();
+		notifyAll();
+	}
+
+	private void skipLeft() {
+		while(entering < left.length && left[entering]) {
+			++entering;
+		}
+	}
+
+	/**
+	 * @return copies of the decisions committed so far, to clean against
+	 */
+	synchronized Snapshot snapshot() {
+		return new Snapshot(names, roles);
+	}
+
+	/**
+	 * Wait until every file before this one has committed, or given up its turn
+	 * 
+	 * @param position - the file's place in the batch
+	 * @throws InterruptedException - if interrupted while waiting
+	 */
+	synchronized void awaitTurn(int position) throws InterruptedException {
+		while(turn < position) {
+			wait();
+		}
+	}
+
+	/**
+	 * Add the decisions made against a snapshot to those committed, unless a file committed
+	 * since the snapshot was taken could have changed them.  Call in the file's turn.
+	 * 
+	 * @param snapshot - the snapshot the file cleaned against
+	 * @return null if the decisions were committed, or else a new snapshot to clean again
+	 * against, which already holds the decisions that stand
+	 */
+	synchronized Snapshot commit(Snapshot snapshot) {
+		int namesKept = unchanged(names, snapshot.names, snapshot.namesApproved);
+		int rolesKept = unchanged(roles, snapshot.roles, snapshot.rolesApproved);
+		if(namesKept == snapshot.names.getRecorded().size() && rolesKept == snapshot.roles.getRecorded().size()) {
+			merge(names, snapshot.names, namesKept);
+			merge(roles, snapshot.roles, rolesKept);
+			return null;
+		}
+		Snapshot again = new Snapshot(names, roles);
+		merge(again.names, snapshot.names, namesKept);
+		merge(again.roles, snapshot.roles, rolesKept);
+		return again;
+	}
+
+	/**
+	 * Candidates are searched for in the order their decisions were recorded, so those before
+	 * the first that a decision committed since the snapshot could change are made the same
+	 * way either way.
+	 * 
+	 * @param committed - the decisions committed so far
+	 * @param cleaned - a snapshot of them, with a file's new decisions recorded
+	 * @param approvedBefore - how many names were approved when the snapshot was taken
+	 * @return how many of the file's decisions, in the order recorded, stand
+	 */
+	private int unchanged(CleaningHistory committed, CleaningHistory cleaned, int approvedBefore) {
+		List<String> recorded = cleaned.getRecorded();
+		List<String> approvedSince = committed.getApprovedNames().subList(approvedBefore, committed.getApprovedNames().size());
+		ApprovedNameIndex index = null;
+		if(!approvedSince.isEmpty()) {
+			index = CandidateIdentifier.newApprovedNameIndex(config);
+			for(String name : approvedSince) {
+				index.add(name);
+			}
+		}
+		for(int i = 0; i < recorded.size(); ++i) {
+			String raw = recorded.get(i);
+			// The unknown actor is never searched for, so it's cleaned to itself either way
+			if(raw.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				continue;
+			}
+			if(committed.getCleanedID(raw) != null) {
+				return i;
+			}
+			// A name the candidate isn't close enough to is never the closest, so can't change its search
+			if(index != null && index.findClosest(new NamePattern(raw), config.getDistanceThreshold(raw)) != null) {
+				return i;
+			}
+		}
+		return recorded.size();
+	}
+
+	/**
+	 * Record the first of a file's new decisions, in the order it made them
+	 * 
+	 * @param into - the decisions to add to
+	 * @param cleaned - the snapshot the file cleaned against
+	 * @param count - how many of its decisions to record
+	 */
+	private static void merge(CleaningHistory into, CleaningHistory cleaned, int count) {
+		List<String> recorded = cleaned.getRecorded();
+		for(int i = 0; i < count; ++i) {
+			String raw = recorded.get(i);
+			if(into.getCleanedID(raw) == null) {
+				into.record(raw, cleaned.getCleanedID(raw));
+			}
+		}
+	}
+
+	/**
+	 * End a file's turn, or give it up if it hasn't come yet.  Ending a turn twice does nothing.
+	 * 
+	 * @param position - the file's place in the batch
+	 */
+	public synchronized void endTurn(int position) {
+		finished[position] = true;
+		while(turn < finished.length && finished[turn]) {
+			++turn;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Write the decisions to the configuration's cleaning history, if it names one
+	 * 
+	 * @throws IOException - if the history can't be written
+	 */
+	public synchronized void save() throws IOException {
+		if(namesFile != null) {
+			names.save(namesFile);
+			roles.save(rolesFile);
+		}
+	}
+
+	/**
+	 * Copies of the decisions committed when a file began cleaning, which the file's cleaning
+	 * adds its own decisions to
+	 */
+	static class Snapshot {
+
+		final CleaningHistory names;
+		final CleaningHistory roles;
+
+		/**
+		 * How many names and roles had been approved when the copies were taken
+		 */
+		final int namesApproved;
+		final int rolesApproved;
+
+		private Snapshot(CleaningHistory committedNames, CleaningHistory committedRoles) {
+			names = committedNames.copy();
+			roles = committedRoles.copy();
+			namesApproved = names.getApprovedNames().size();
+			rolesApproved = roles.getApprovedNames().size();
+		}
+	}
+
+}
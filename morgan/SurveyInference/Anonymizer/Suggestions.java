@@ -0,0 +1,160 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Anonymizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import morgan.SurveyInference.Logging.PerformanceReport;
+import morgan.SurveyInference.Logging.SurveyLog;
+
+/**
+ * Finds alternatives for the review tabs: for each cleaned candidate, the k approved names
+ * closest to it other than the one it was cleaned to, with their distances.  They are stored
+ * on the candidate, so offering them to a reviewer needs no further search.
+ *
+ * Once cleaning is done every approved name goes into a BK-tree, and each candidate is
+ * searched within one more than its threshold, so a near miss cleaning left alone is offered
+ * too.  The search keeps the names found in a queue bounded at k and only looks as far as the
+ * worst of them (see BKTree.findNearest).  The tree isn't changed by searching, so with more
+ * than one cleaning thread the candidates are searched in parallel.
+ *
+ * @author gmorgan, kgarbach
+ *
+ */
+public class Suggestions {
+
+	/**
+	 * Candidates a single search task handles without splitting further
+	 */
+	static final int SEARCH_GRAIN = 64;
+
+	/**
+	 * Find and store each candidate's suggestions
+	 * 
+	 * @param engine - the Anonymizer that cleaned them, whose settings apply
+	 * @param theRawIDs - the cleaned candidates
+	 * @param uniqueIDs - the approved names
+	 * @param k - how many alternatives to find for each candidate; 0 finds none
+	 * @param kind - Checkpoint.NAMES or Checkpoint.ROLES, or null
+	 */
+	static void suggest(Anonymizer engine, List<CandidateIdentifier> theRawIDs, HashSet<String> uniqueIDs, int k, String kind) {
+		if(k <= 0) {
+			return;
+		}
+		PerformanceReport.Phase phase = engine.beginPhase(kind == null ? "suggest" : "suggest:" + kind);
+		// Add in a fixed order, so ties are broken the same way every run
+		ArrayList<String> approved = new ArrayList<String>(uniqueIDs);
+		Collections.sort(approved, new Comparator<String>() {
+			public int compare(String a, String b) {
+				if(a.length() != b.length()) {
+					return a.length() < b.length() ? -1 : 1;
+				}
+				return a.compareTo(b);
+			}
+		});
+		BKTree tree = new BKTree(engine.getConfig());
+		for(String name : approved) {
+			// The unknown actor is never offered as an alternative
+			if(!name.equals(Anonymizer.UNKNOWN_ACTOR)) {
+				tree.add(name);
+			}
+		}
+
+		int threads = engine.getConfig().getCleaningThreads();
+		SearchTask task = new SearchTask(engine, theRawIDs, 0, theRawIDs.size(), tree, k);
+		if(threads > 1) {
+			ParallelCleaner.getPool(threads).invoke(task);
+		}
+		else {
+			task.compute();
+		}
+
+		long offered = 0;
+		for(CandidateIdentifier candidate : theRawIDs) {
+			if(candidate.suggestions != null) {
+				offered += candidate.suggestions.length;
+			}
+		}
+		SurveyLog.info("Suggested " + offered + " alternatives for " + theRawIDs.size() + " candidates.");
+		phase.set("suggestions", offered).end(theRawIDs.size());
+	}
+
+	/**
+	 * Searches a slice of the candidates and stores what it finds on each
+	 */
+	static class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		Anonymizer engine;
+		List<CandidateIdentifier> candidates;
+		int start;
+		int end;
+		BKTree tree;
+		int k;
+
+		SearchTask(Anonymizer theEngine, List<CandidateIdentifier> theCandidates, int theStart, int theEnd, BKTree theTree, int theK) {
+			engine = theEngine;
+			candidates = theCandidates;
+			start = theStart;
+			end = theEnd;
+			tree = theTree;
+			k = theK;
+		}
+
+		@Override
+		protected void compute() {
+			// Only split when running in the pool; otherwise search the lot on this thread
+			if(end - start > SEARCH_GRAIN && getPool() != null) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new SearchTask(engine, candidates, start, middle, tree, k), new SearchTask(engine, candidates, middle, end, tree, k));
+				return;
+			}
+			for(int i = start; i < end; ++i) {
+				if((i - start) % SEARCH_GRAIN == 0) {
+					engine.checkCancelled();
+				}
+				CandidateIdentifier candidate = candidates.get(i);
+				if(candidate.id.equals(Anonymizer.UNKNOWN_ACTOR)) {
+					continue;
+				}
+				NamePattern pattern = new NamePattern(candidate.id);
+				int maxDistance = engine.getConfig().getDistanceThreshold(candidate.id) + 1;
+				List<BKTree.Neighbour> nearest = tree.findNearest(pattern, maxDistance, k, candidate.cleanedID);
+				candidate.suggestions = new String[nearest.size()];
+				candidate.suggestionDistances = new int[nearest.size()];
+				for(int n = 0; n < nearest.size(); ++n) {
+					candidate.suggestions[n] = nearest.get(n).node.name;
+					candidate.suggestionDistances[n] = nearest.get(n).distance;
+				}
+			}
+		}
+	}
+
+}
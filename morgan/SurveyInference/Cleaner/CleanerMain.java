@@ -34,6 +34,9 @@ import java.util.HashMap;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
+import morgan.SurveyInference.Logging.PerformanceReport;
+import morgan.SurveyInference.Logging.SurveyLog;
+
 /**
  * CleanerMain is the script file that controls Cleaner operations.
  * 
@@ -72,6 +75,12 @@ public class CleanerMain {
 	 * single column cleaning (mode 1).
 	 */
 	static int cleanMode = 0;
+	/**
+	 * Running totals, reported when a file has been cleaned.  Individual replacements are only
+	 * logged at the DEBUG level of SurveyLog.
+	 */
+	static SurveyLog.Counter rowsProcessed = SurveyLog.counter("Rows processed");
+	static SurveyLog.Counter replacementsMade = SurveyLog.counter("Replacements made");
 
 	/**
 	 * The full Cleaner script, this tool was designed to quickly and accurately replace elements that need
@@ -164,10 +173,14 @@ public class CleanerMain {
 	 * @param f - the input file to clean
 	 */
 	static void cleanRolesInFile(File f) {
+		SurveyLog.resetCounters();
+		PerformanceReport.start("Cleaner").detail("input", f.getAbsolutePath());
+		PerformanceReport.Phase phase = PerformanceReport.begin("cleanRolesInFile");
 		try {
 
+			File output = new File(f.getCanonicalPath() + "_CleanedRoles.txt");
 			BufferedReader reader = new BufferedReader(new FileReader(f));
-			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(f.getCanonicalPath() + "_CleanedRoles.txt")));
+			BufferedWriter writer = new BufferedWriter(new FileWriter(output));
 			String headerLine = reader.readLine();
 
 			String[] header = headerLine.split(DELIMITER);
@@ -194,6 +207,7 @@ public class CleanerMain {
 
 
 			while(reader.ready()) {
+				rowsProcessed.increment();
 				HashMap<String, String> dataMap = new HashMap<String, String>();
 				String dataLine = reader.readLine();
 				String[] data = dataLine.split(DELIMITER);
@@ -218,7 +232,10 @@ public class CleanerMain {
 							for(String cleanKey : cleaningMap.keySet()) {
 
 								if(currentValue.equals(cleanKey)) {
-									System.out.println("Replacing " + currentValue + " with " + cleaningMap.get(cleanKey));
+									replacementsMade.increment();
+									if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+										SurveyLog.debug("Replacing " + currentValue + " with " + cleaningMap.get(cleanKey));
+									}
 									currentValue = cleaningMap.get(cleanKey);
 									break;
 								}
@@ -240,7 +257,9 @@ public class CleanerMain {
 						value = dataMap.get(h);
 					}
 					else {
-						System.out.println("Value-Pair not found. " + h);
+						if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+							SurveyLog.debug("Value-Pair not found. " + h);
+						}
 					}
 					newDataLine += value + DELIMITER;
 				}
@@ -251,6 +270,10 @@ public class CleanerMain {
 
 			reader.close();
 			writer.close();
+			phase.set("replacements", replacementsMade.get()).end(rowsProcessed.get());
+			PerformanceReport.finish(output);
+			SurveyLog.info(SurveyLog.getCounterSummary());
+			SurveyLog.flush();
 
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
@@ -267,10 +290,14 @@ public class CleanerMain {
 	 * @param f, the input file used and then cleaned
 	 */
 	static void cleanColumnInFile(String column, File f) {
+		SurveyLog.resetCounters();
+		PerformanceReport.start("Cleaner").detail("input", f.getAbsolutePath()).detail("column", column);
+		PerformanceReport.Phase phase = PerformanceReport.begin("cleanColumnInFile");
 		try {
 
+			File output = new File(f.getCanonicalPath() + "_Cleaned" + column + ".txt");
 			BufferedReader reader = new BufferedReader(new FileReader(f));
-			BufferedWriter writer = new BufferedWriter(new FileWriter(new File(f.getCanonicalPath() + "_Cleaned" + column + ".txt")));
+			BufferedWriter writer = new BufferedWriter(new FileWriter(output));
 			String headerLine = reader.readLine();
 			writer.write(headerLine);
 			writer.newLine();
@@ -280,6 +307,7 @@ public class CleanerMain {
 			}
 
 			while(reader.ready()) {
+				rowsProcessed.increment();
 				HashMap<String, String> dataMap = new HashMap<String, String>();
 				String dataLine = reader.readLine();
 				String[] data = dataLine.split(DELIMITER);
@@ -297,7 +325,9 @@ public class CleanerMain {
 					if(!currentValue.equals("")) {
 						//System.out.println("Attempting to clean " + key + ", value: " + dataMap.get(key));
 					}
-					System.out.println("\tOriginal:" + currentValue);
+					if(SurveyLog.isEnabled(SurveyLog.Level.TRACE)) {
+						SurveyLog.trace("\tOriginal:" + currentValue);
+					}
 					currentValue = currentValue.replaceAll("\"", "");
 					dataMap.remove(key);
 					String[] commaSeparated = currentValue.split(",");
@@ -307,7 +337,10 @@ public class CleanerMain {
 						for(String cleanKey : cleaningMap.keySet()) {
 							//System.out.println("\t\tTrying " + cleanKey);
 							if(t.equals(cleanKey)) {
-								System.out.println("\t\t\tUpdating " + cleanKey + " with " + cleaningMap.get(cleanKey));
+								replacementsMade.increment();
+								if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+									SurveyLog.debug("\t\t\tUpdating " + cleanKey + " with " + cleaningMap.get(cleanKey));
+								}
 								t = cleaningMap.get(cleanKey);
 								
 							}
@@ -339,7 +372,9 @@ public class CleanerMain {
 					}
 					currentValue = newValue.substring(0, newValue.length()-2);
 					*/
-					System.out.println("\tCurrent:" + currentValue);
+					if(SurveyLog.isEnabled(SurveyLog.Level.TRACE)) {
+						SurveyLog.trace("\tCurrent:" + currentValue);
+					}
 					dataMap.put(key, currentValue);
 
 				}
@@ -356,6 +391,10 @@ public class CleanerMain {
 
 			reader.close();
 			writer.close();
+			phase.set("replacements", replacementsMade.get()).end(rowsProcessed.get());
+			PerformanceReport.finish(output);
+			SurveyLog.info(SurveyLog.getCounterSummary());
+			SurveyLog.flush();
 
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
@@ -435,7 +474,9 @@ public class CleanerMain {
 						cleaningMap.put(data[sourceIndex].trim(), data[targetIndex].trim());
 						if(categoryIndex != -1) {
 							categoryMap.put(data[sourceIndex].trim(), data[categoryIndex].trim());
-							System.out.println("Raw: " + data[sourceIndex] + " Cleaned: " + data[targetIndex] + " Category: " + data[categoryIndex]);
+							if(SurveyLog.isEnabled(SurveyLog.Level.DEBUG)) {
+								SurveyLog.debug("Raw: " + data[sourceIndex] + " Cleaned: " + data[targetIndex] + " Category: " + data[categoryIndex]);
+							}
 
 						}
 					}
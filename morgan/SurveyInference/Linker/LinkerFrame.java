@@ -43,6 +43,8 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 
+import morgan.SurveyInference.Logging.PerformanceReport;
+
 /**
  * The LinkerFrame is the root UI object to allow users to configure the Linker
  * @author gmorgan, kgarbach
@@ -175,6 +177,10 @@ public class LinkerFrame extends JFrame implements ActionListener {
 	public void actionPerformed(ActionEvent ae) {
 		// TODO Auto-generated method stub
 		if(ae.getSource().equals(processLinkagesButton)) {
+			if(PerformanceReport.current() == null) {
+				// The report of the last linkage went with its output
+				PerformanceReport.start("Linker").detail("input", LinkerMain.dataFile.getAbsolutePath());
+			}
 			HashMap<String, IdentifiedNode> nodes = LinkerMain.identifyUniqueNodes(LinkerMain.nodeDefinitions, LinkerMain.pData);
 			JOptionPane.showMessageDialog(this, "Number of Nodes Found: " + nodes.size());
 			
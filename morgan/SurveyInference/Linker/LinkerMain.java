@@ -43,6 +43,8 @@ import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.ProgressMonitorInputStream;
 
+import morgan.SurveyInference.Logging.PerformanceReport;
+
 /**
  * This script initializes the Linker.  It reads the initial configuration and data file
  * and then starts up the UI.
@@ -106,6 +108,7 @@ public class LinkerMain {
 				lastFileLocation = dataFileChooser.getSelectedFile().getParent();
 				dataFile = dataFileChooser.getSelectedFile();
 
+				PerformanceReport.start("Linker").detail("input", dataFile.getAbsolutePath());
 				pData = readDataFile(dataFile);
 				GUI = new LinkerFrame("Linker: Identifying nodes to establish linkages (" + dataFile.getName() + ")", nodeDefinitions, headers);
 			}
@@ -129,7 +132,7 @@ public class LinkerMain {
 	 * @return a HashMap of unique-ids and their accompanying nodes
 	 */
 	static HashMap<String, IdentifiedNode> identifyUniqueNodes(ArrayList<NodeDefinition> definitions, ArrayList<HashMap<String, String>> pData) {
-
+		PerformanceReport.Phase phase = PerformanceReport.begin("identifyUniqueNodes");
 		HashMap<String, IdentifiedNode> uniqueNodes = new HashMap<String, IdentifiedNode>();
 
 		for(HashMap<String, String> participant : pData) {
@@ -173,7 +176,7 @@ public class LinkerMain {
 
 		}
 
-
+		phase.set("nodes", uniqueNodes.size()).end(pData.size());
 		return uniqueNodes;
 	}
 
@@ -218,6 +221,7 @@ public class LinkerMain {
 	 * @param f, the file to write out
 	 */
 	static void writeDynetML(HashMap<String, IdentifiedNode> nodes, ArrayList<NetworkDefinition> definitions, String id, File f) {
+		PerformanceReport.Phase phase = PerformanceReport.begin("writeDynetML");
 		try {
 
 			HashMap<String, IdentifiedNode> rejiggeredNodes = new HashMap<String, IdentifiedNode>();
@@ -231,6 +235,8 @@ public class LinkerMain {
 			writeDynetMLFooter(writer);
 			writer.flush();
 			writer.close();
+			phase.set("bytesWritten", f.length()).end(nodes.size());
+			PerformanceReport.finish(f);
 			
 			JOptionPane.showMessageDialog(GUI, f.getAbsolutePath() + " successfully written to file.");
 		} catch (Exception e) {
@@ -335,6 +341,7 @@ public class LinkerMain {
 	}
 
 	static void writeTabDelimitedTextFiles(HashMap<String, IdentifiedNode> nodes, ArrayList<NetworkDefinition> definitions, File parentDir) {
+		PerformanceReport.Phase phase = PerformanceReport.begin("writeTabDelimitedTextFiles");
 		for(NodeDefinition definition : nodeDefinitions) {
 			try {
 				writeNodeListToTabDelimitedTextFile(parentDir, nodes, definition);
@@ -353,6 +360,8 @@ public class LinkerMain {
 				}
 			}
 		}
+		phase.end(nodes.size());
+		PerformanceReport.finish(parentDir);
 		JOptionPane.showMessageDialog(GUI, "TXT files written to: " + parentDir.getAbsolutePath());
 	}
 
@@ -433,6 +442,7 @@ public class LinkerMain {
 	 * @throws Exception If someone goes wrong in reading the data file, we cancel execution
 	 */
 	static ArrayList<HashMap<String, String>> readDataFile(File dataFile) throws Exception {
+		PerformanceReport.Phase phase = PerformanceReport.begin("readDataFile");
 		ArrayList<HashMap<String, String>> participantData = new ArrayList<HashMap<String, String>>();
 
 		
@@ -467,6 +477,7 @@ public class LinkerMain {
 		}
 		reader.close();
 
+		phase.end(participantData.size());
 		return participantData;
 	}
 }
@@ -0,0 +1,412 @@
+/*
+ * Anonymizer is a tool for anonymizing portions of a structured data-sheet.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Logging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Where a run spends its time and memory, phase by phase, written at the end of the run as a
+ * JSON file next to its output (see fileFor), so throughput can be compared across data
+ * sizes and releases.
+ * 
+ * A tool starts a report when a run starts.  Each phase is measured from begin to end: wall
+ * time, CPU time, bytes allocated and the heap in use when it ended, with the rows it
+ * processed and whatever else the phase sets, such as distance evaluations.  Ended phases
+ * are added to the current report, if there is one, so methods can measure themselves
+ * whoever calls them.  Where several runs share the JVM, each creates a report of its own
+ * and begins its phases on it; such phases are only ever added to their own report.
+ * 
+ * CPU time and allocation are those of the whole process where the JVM can tell (HotSpot
+ * can), so a phase running alongside another, as name and role cleaning can, is charged for
+ * both.  Where the JVM can't total allocation for the process, it is summed over the threads
+ * alive when the phase ends; the report says which in allocationScope.  Anything the JVM
+ * can't measure is reported as -1.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class PerformanceReport {
+
+	private static volatile PerformanceReport current = null;
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+
+	/**
+	 * Process-wide measures HotSpot has; getTotalThreadAllocatedBytes only from Java 21
+	 */
+	private static final Method totalAllocated = findMethod("com.sun.management.ThreadMXBean", threads, "getTotalThreadAllocatedBytes");
+	private static final Method processCpuTime = findMethod("com.sun.management.OperatingSystemMXBean", system, "getProcessCpuTime");
+
+	private final String tool;
+	private final long started = System.currentTimeMillis();
+	private final long startNanos = System.nanoTime();
+	private final LinkedHashMap<String, Object> details = new LinkedHashMap<String, Object>();
+	private final ArrayList<Phase> phases = new ArrayList<Phase>();
+
+	private PerformanceReport(String theTool) {
+		tool = theTool;
+	}
+
+	/**
+	 * Start a report for a new run, replacing any earlier one
+	 * 
+	 * @param tool - the tool running, such as "Anonymizer"
+	 * @return the report
+	 */
+	public static PerformanceReport start(String tool) {
+		current = new PerformanceReport(tool);
+		return current;
+	}
+
+	/**
+	 * Create a report for a run of its own, which doesn't become the current report
+	 * 
+	 * @param tool - the tool running, such as "Anonymizer"
+	 * @return the report
+	 */
+	public static PerformanceReport create(String tool) {
+		return new PerformanceReport(tool);
+	}
+
+	/**
+	 * @return the report of the current run, or null if there is none
+	 */
+	public static PerformanceReport current() {
+		return current;
+	}
+
+	/**
+	 * Start measuring a phase
+	 * 
+	 * @param name - the phase, usually the method doing it
+	 * @return the phase, to end when it is done
+	 */
+	public static Phase begin(String name) {
+		return new Phase(name, null);
+	}
+
+	/**
+	 * Start measuring a phase of this report's run
+	 * 
+	 * @param name - the phase, usually the method doing it
+	 * @return the phase, to end when it is done
+	 */
+	public Phase beginPhase(String name) {
+		return new Phase(name, this);
+	}
+
+	/**
+	 * Write the current report next to the run's output, and end it.  A report that can't be
+	 * written is only warned about; it doesn't fail the run.
+	 * 
+	 * @param output - the run's output file (or folder)
+	 */
+	public static void finish(File output) {
+		PerformanceReport report = current;
+		current = null;
+		if(report == null) {
+			return;
+		}
+		report.writeFor(output);
+	}
+
+	/**
+	 * Write this report next to the run's output.  A report that can't be written is only
+	 * warned about; it doesn't fail the run.
+	 * 
+	 * @param output - the run's output file (or folder)
+	 */
+	public void writeFor(File output) {
+		File file = fileFor(output);
+		detail("output", output.getAbsolutePath());
+		try {
+			write(file);
+			SurveyLog.info("Performance report written to " + file);
+		} catch (IOException e) {
+			SurveyLog.warn("Could not write the performance report " + file + ": " + e);
+		}
+	}
+
+	/**
+	 * @param output - a run's output file (or folder)
+	 * @return where its performance report goes
+	 */
+	public static File fileFor(File output) {
+		return new File(output.getPath() + ".performance.json");
+	}
+
+	/**
+	 * Add something about the run as a whole, such as its input file
+	 * 
+	 * @param value - a String, or a Number or Boolean to be written as one
+	 */
+	public synchronized PerformanceReport detail(String key, Object value) {
+		details.put(key, value);
+		return this;
+	}
+
+	private synchronized void add(Phase phase) {
+		phases.add(phase);
+	}
+
+	/**
+	 * Write the report as JSON
+	 * 
+	 * @param file - where to write it
+	 * @throws IOException - if it can't be written
+	 */
+	public synchronized void write(File file) throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		field(json, "  ", "tool", tool).append(",\n");
+		field(json, "  ", "started", format.format(new Date(started))).append(",\n");
+		json.append("  \"wallMillis\": ").append((System.nanoTime() - startNanos) / 1000000).append(",\n");
+		field(json, "  ", "javaVersion", System.getProperty("java.version")).append(",\n");
+		json.append("  \"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+		json.append("  \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory()).append(",\n");
+		field(json, "  ", "allocationScope", totalAllocated != null ? "process" : "liveThreads").append(",\n");
+		for(Map.Entry<String, Object> detail : details.entrySet()) {
+			Object value = detail.getValue();
+			if(value instanceof Number || value instanceof Boolean) {
+				field(json, "  ", detail.getKey(), null).append(value).append(",\n");
+			}
+			else {
+				field(json, "  ", detail.getKey(), String.valueOf(value)).append(",\n");
+			}
+		}
+		json.append("  \"phases\": [");
+		for(int i = 0; i < phases.size(); ++i) {
+			json.append(i == 0 ? "\n" : ",\n");
+			phases.get(i).toJSON(json, startNanos);
+		}
+		json.append("\n  ]\n}\n");
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * A phase of a run, measured from begin to end
+	 */
+	public static class Phase {
+
+		private final String name;
+		private final PerformanceReport owner;
+		private final long startNanos;
+		private final long startCpu;
+		private final long startAllocated;
+		private final HashMap<Long, Long> startThreadAllocated;
+		private long wallNanos = -1;
+		private long cpuNanos = -1;
+		private long allocated = -1;
+		private long heapUsed = -1;
+		private long rows = -1;
+		private final LinkedHashMap<String, Long> values = new LinkedHashMap<String, Long>();
+
+		private Phase(String theName, PerformanceReport theOwner) {
+			name = theName;
+			owner = theOwner;
+			startCpu = processCpuNanos();
+			if(totalAllocated != null) {
+				startAllocated = invoke(totalAllocated, threads);
+				startThreadAllocated = null;
+			}
+			else {
+				startAllocated = -1;
+				startThreadAllocated = threadAllocations();
+			}
+			startNanos = System.nanoTime();
+		}
+
+		/**
+		 * Record something else the phase did, such as distance evaluations
+		 */
+		public synchronized Phase set(String key, long value) {
+			values.put(key, value);
+			return this;
+		}
+
+		/**
+		 * Stop measuring, and add the phase to its report, or the current report if it was begun
+		 * without one
+		 * 
+		 * @param rowsProcessed - how many rows (or candidates, or nodes) the phase processed
+		 */
+		public void end(long rowsProcessed) {
+			wallNanos = System.nanoTime() - startNanos;
+			long cpu = processCpuNanos();
+			cpuNanos = cpu < 0 || startCpu < 0 ? -1 : cpu - startCpu;
+			if(startThreadAllocated == null) {
+				long end = invoke(totalAllocated, threads);
+				allocated = end < 0 || startAllocated < 0 ? -1 : end - startAllocated;
+			}
+			else if(startThreadAllocated.size() > 0) {
+				allocated = 0;
+				for(Map.Entry<Long, Long> thread : threadAllocations().entrySet()) {
+					Long before = startThreadAllocated.get(thread.getKey());
+					allocated += thread.getValue() - (before == null ? 0 : before);
+				}
+			}
+			Runtime runtime = Runtime.getRuntime();
+			heapUsed = runtime.totalMemory() - runtime.freeMemory();
+			rows = rowsProcessed;
+			PerformanceReport report = owner != null ? owner : current;
+			if(report != null) {
+				report.add(this);
+			}
+		}
+
+		/**
+		 * @return the wall time, in nanoseconds, or -1 before the phase ends
+		 */
+		public long getWallNanos() {
+			return wallNanos;
+		}
+
+		private synchronized void toJSON(StringBuilder json, long reportStart) {
+			json.append("    {");
+			field(json, "", "name", name);
+			json.append(", \"startMillis\": ").append(Math.max(0, startNanos - reportStart) / 1000000);
+			json.append(", \"wallMillis\": ").append(wallNanos / 1000000);
+			json.append(", \"cpuMillis\": ").append(cpuNanos < 0 ? -1 : cpuNanos / 1000000);
+			json.append(", \"allocatedBytes\": ").append(allocated);
+			json.append(", \"heapUsedBytes\": ").append(heapUsed);
+			json.append(", \"rows\": ").append(rows);
+			json.append(", \"rowsPerSecond\": ");
+			json.append(wallNanos > 0 && rows >= 0 ? String.format(Locale.ROOT, "%.1f", rows * 1e9 / wallNanos) : "-1");
+			for(Map.Entry<String, Long> value : values.entrySet()) {
+				json.append(", ");
+				field(json, "", value.getKey(), null).append(value.getValue());
+			}
+			json.append("}");
+		}
+	}
+
+	/**
+	 * Append "key": "value", or just "key": if value is null
+	 */
+	private static StringBuilder field(StringBuilder json, String indent, String key, String value) {
+		json.append(indent);
+		quote(json, key).append(": ");
+		if(value != null) {
+			quote(json, value);
+		}
+		return json;
+	}
+
+	private static StringBuilder quote(StringBuilder json, String text) {
+		json.append('"');
+		for(int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			}
+			else if(c < 0x20) {
+				json.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+			}
+			else {
+				json.append(c);
+			}
+		}
+		return json.append('"');
+	}
+
+	private static long processCpuNanos() {
+		if(processCpuTime != null) {
+			return invoke(processCpuTime, system);
+		}
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+	}
+
+	/**
+	 * @return the bytes allocated so far by each live thread, empty if the JVM can't tell
+	 */
+	private static HashMap<Long, Long> threadAllocations() {
+		HashMap<Long, Long> allocations = new HashMap<Long, Long>();
+		if(threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threads;
+			if(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+				long[] ids = threads.getAllThreadIds();
+				long[] bytes = allocationBean.getThreadAllocatedBytes(ids);
+				for(int i = 0; i < ids.length; ++i) {
+					if(bytes[i] >= 0) {
+						allocations.put(ids[i], bytes[i]);
+					}
+				}
+			}
+		}
+		return allocations;
+	}
+
+	/**
+	 * @return the method of the interface, if the bean implements it and the call works
+	 */
+	private static Method findMethod(String interfaceName, Object bean, String name) {
+		try {
+			Class<?> beanInterface = Class.forName(interfaceName);
+			if(!beanInterface.isInstance(bean)) {
+				return null;
+			}
+			Method method = beanInterface.getMethod(name);
+			if(((Number)method.invoke(bean)).longValue() < 0) {
+				return null;
+			}
+			return method;
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	private static long invoke(Method method, Object bean) {
+		try {
+			return ((Number)method.invoke(bean)).longValue();
+		} catch (Throwable e) {
+			return -1;
+		}
+	}
+
+}
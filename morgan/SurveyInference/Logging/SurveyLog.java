@@ -0,0 +1,305 @@
+/*
+ * SurveyInference is a set of tools for anonymizing, cleaning and linking survey data.
+ * Copyright 2016, Geoffrey P Morgan and Kelly Garbach
+ *
+ * This tool is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License version 2 as published by the Free Software Foundation.
+ *
+ * This tool is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this tool; if not, write to the
+ * Free Software Foundation, Inc., 51 Franklin St, Fifth Floor,
+ * Boston, MA 02110-1301, USA.
+ *
+ * You can also read the license directly at: http://www.gnu.org/licenses/gpl-2.0.html
+ *
+ * You can contact the authors by e-mailing kgarbach@luc.edu
+ */
+
+package morgan.SurveyInference.Logging;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A small logging facility shared by the SurveyInference tools.
+ * 
+ * Messages have a level, and only those at or above the current level (INFO by default) are
+ * kept.  Per-cell and per-comparison events are logged at DEBUG or TRACE, so by default they
+ * cost a single comparison; callers building an expensive message should check isEnabled
+ * first.  Kept messages go onto a lock-free queue and are written by one background thread,
+ * so the threads doing the work never wait on the console.
+ * 
+ * Counters keep a running total of things too frequent to log one by one (rows processed,
+ * replacements made) and can be reported together at the end of a run.
+ * 
+ * The level can be set with the system property surveyinference.logLevel, or by the tools'
+ * own configuration.
+ * 
+ * @author gmorgan, kgarbach
+ *
+ */
+public class SurveyLog {
+
+	/**
+	 * Levels, from the most to the least important
+	 */
+	public enum Level {
+		ERROR, WARN, INFO, DEBUG, TRACE
+	}
+
+	/**
+	 * Messages above this level (by ordinal) are dropped
+	 */
+	private static volatile int threshold = Level.INFO.ordinal();
+
+	/**
+	 * Where messages are written
+	 */
+	private static volatile PrintStream out = System.out;
+
+	/**
+	 * Messages waiting to be written, and how many have been queued and written so far
+	 */
+	private static final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<String>();
+	private static final AtomicLong queued = new AtomicLong();
+	private static final AtomicLong written = new AtomicLong();
+
+	/**
+	 * The background writer, started with the first message
+	 */
+	private static Thread writer = null;
+
+	/**
+	 * How long the writer sleeps when there is nothing to write
+	 */
+	private static final long IDLE_NANOS = 2000000;
+
+	/**
+	 * Messages written with a single call to the stream
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * The counters, in the order they were created
+	 */
+	private static final ArrayList<Counter> counters = new ArrayList<Counter>();
+
+	static {
+		String property = System.getProperty("surveyinference.logLevel");
+		if(property != null) {
+			Level level = parseLevel(property);
+			if(level != null) {
+				setLevel(level);
+			}
+		}
+	}
+
+	/**
+	 * @param name - a level name, in any case
+	 * @return the level, or null if there is no such level
+	 */
+	public static Level parseLevel(String name) {
+		for(Level level : Level.values()) {
+			if(level.name().equalsIgnoreCase(name.trim())) {
+				return level;
+			}
+		}
+		return null;
+	}
+
+	public static void setLevel(Level level) {
+		threshold = level.ordinal();
+	}
+
+	public static Level getLevel() {
+		return Level.values()[threshold];
+	}
+
+	/**
+	 * @param level - the level of a message
+	 * @return true if messages at that level are kept
+	 */
+	public static boolean isEnabled(Level level) {
+		return level.ordinal() <= threshold;
+	}
+
+	/**
+	 * @param stream - where messages should be written from now on
+	 */
+	public static void setOutput(PrintStream stream) {
+		out = stream;
+	}
+
+	/**
+	 * Queue a message to be written, if its level is enabled
+	 * 
+	 * @param level - how important the message is
+	 * @param message - the message
+	 */
+	public static void log(Level level, String message) {
+		if(!isEnabled(level)) {
+			return;
+		}
+		queue.offer(level == Level.INFO ? message : "[" + level + "] " + message);
+		queued.incrementAndGet();
+		if(writer == null) {
+			startWriter();
+		}
+	}
+
+	public static void error(String message) {
+		log(Level.ERROR, message);
+	}
+
+	public static void warn(String message) {
+		log(Level.WARN, message);
+	}
+
+	public static void info(String message) {
+		log(Level.INFO, message);
+	}
+
+	public static void debug(String message) {
+		log(Level.DEBUG, message);
+	}
+
+	public static void trace(String message) {
+		log(Level.TRACE, message);
+	}
+
+	/**
+	 * Wait until every message queued so far has been written
+	 */
+	public static void flush() {
+		long target = queued.get();
+		while(written.get() < target && writer != null && writer.isAlive()) {
+			LockSupport.parkNanos(IDLE_NANOS);
+		}
+		out.flush();
+	}
+
+	private static synchronized void startWriter() {
+		if(writer != null) {
+			return;
+		}
+		writer = new Thread(new Runnable() {
+			public void run() {
+				StringBuilder batch = new StringBuilder();
+				while(true) {
+					int count = 0;
+					String message;
+					while(count < BATCH_SIZE && (message = queue.poll()) != null) {
+						batch.append(message).append('\n');
+						++count;
+					}
+					if(count > 0) {
+						PrintStream stream = out;
+						stream.print(batch);
+						stream.flush();
+						batch.setLength(0);
+						written.addAndGet(count);
+					}
+					else {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+				}
+			}
+		}, "SurveyLog writer");
+		writer.setDaemon(true);
+		writer.start();
+		// Don't lose the last messages when the program exits
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				flush();
+			}
+		}, "SurveyLog flush"));
+	}
+
+	/**
+	 * Find or create a counter
+	 * 
+	 * @param name - what the counter counts, such as "rows processed"
+	 * @return the counter with that name
+	 */
+	public static Counter counter(String name) {
+		synchronized(counters) {
+			for(Counter counter : counters) {
+				if(counter.name.equals(name)) {
+					return counter;
+				}
+			}
+			Counter counter = new Counter(name);
+			counters.add(counter);
+			return counter;
+		}
+	}
+
+	/**
+	 * Set every counter back to zero
+	 */
+	public static void resetCounters() {
+		synchronized(counters) {
+			for(Counter counter : counters) {
+				counter.value.set(0);
+			}
+		}
+	}
+
+	/**
+	 * @return each counter that has counted something, as "name: value" on a line of its own
+	 */
+	public static String getCounterSummary() {
+		StringBuilder summary = new StringBuilder();
+		synchronized(counters) {
+			for(Counter counter : counters) {
+				long value = counter.get();
+				if(value != 0) {
+					if(summary.length() > 0) {
+						summary.append('\n');
+					}
+					summary.append(counter.name).append(": ").append(value);
+				}
+			}
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * A running total, safe to update from several threads
+	 */
+	public static class Counter {
+
+		final String name;
+		final AtomicLong value = new AtomicLong();
+
+		Counter(String theName) {
+			name = theName;
+		}
+
+		public void increment() {
+			value.incrementAndGet();
+		}
+
+		public void add(long amount) {
+			value.addAndGet(amount);
+		}
+
+		public long get() {
+			return value.get();
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+}